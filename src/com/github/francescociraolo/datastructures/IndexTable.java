@@ -0,0 +1,85 @@
+package com.github.francescociraolo.datastructures;
+
+import java.util.Arrays;
+
+/*
+Numbers distinct keys densely, from 0 in the order they are met, so that values of a key can be kept in plain
+arrays by slot. Open addressing on the hash of the keys: looking up a key already met allocates nothing
+ */
+public class IndexTable<K> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /* hash table of the keys and their slots, keys by slot */
+    private Object[] table;
+    private int[] slots;
+    private Object[] keys;
+    private int size;
+
+    public IndexTable() {
+        this.table = new Object[INITIAL_CAPACITY];
+        this.slots = new int[INITIAL_CAPACITY];
+        this.keys = new Object[INITIAL_CAPACITY / 2];
+    }
+
+    /*
+    Slot of the key, a new one the first time it is met
+     */
+    public int slot(K key) {
+        int mask = table.length - 1;
+        int index = mix(key.hashCode()) & mask;
+        for (Object current; (current = table[index]) != null; index = (index + 1) & mask)
+            if (current == key || current.equals(key))
+                return slots[index];
+
+        if (size == keys.length)
+            keys = Arrays.copyOf(keys, size * 2);
+        keys[size] = key;
+        table[index] = key;
+        slots[index] = size;
+
+        if (++size * 2 > table.length)
+            rehash();
+        return size - 1;
+    }
+
+    /*
+    Slot of the key, -1 if never met
+     */
+    public int find(K key) {
+        int mask = table.length - 1;
+        int index = mix(key.hashCode()) & mask;
+        for (Object current; (current = table[index]) != null; index = (index + 1) & mask)
+            if (current == key || current.equals(key))
+                return slots[index];
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public K get(int slot) {
+        if (slot >= size)
+            throw new IndexOutOfBoundsException(slot);
+        return (K) keys[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        table = new Object[table.length * 2];
+        slots = new int[table.length];
+        int mask = table.length - 1;
+        for (int slot = 0; slot < size; slot++) {
+            int index = mix(keys[slot].hashCode()) & mask;
+            while (table[index] != null)
+                index = (index + 1) & mask;
+            table[index] = keys[slot];
+            slots[index] = slot;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.francescociraolo.datastructures;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Bounded queue for exactly one producer thread and one consumer thread, without locks: each side owns its counter and
+publishes it with an ordered write, reading the other one only when its cached copy says the ring is full (or empty).
+The blocking methods spin for a while and then park briefly, waiting for the other side
+ */
+public class SpscRing<T> {
+
+    private static final int SPINS = 1 << 7;
+    private static final long PARK_NANOS = 50_000;
+
+    private final Object[] elements;
+    private final int mask;
+
+    /* next position read by the consumer and written by the producer */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /* the producer's copy of head and the consumer's copy of tail */
+    private long cachedHead;
+    private long cachedTail;
+
+    /*
+    The capacity is rounded up to a power of two
+     */
+    public SpscRing(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The capacity must be positive");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.elements = new Object[size];
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    /*
+    Producer side: false when the ring is full
+     */
+    public boolean offer(T element) {
+        if (element == null)
+            throw new NullPointerException();
+
+        long tail = this.tail.get();
+        if (tail - cachedHead == elements.length) {
+            cachedHead = head.get();
+            if (tail - cachedHead == elements.length)
+                return false;
+        }
+
+        elements[(int) tail & mask] = element;
+        this.tail.lazySet(tail + 1);
+        return true;
+    }
+
+    /*
+    Consumer side: null when the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long head = this.head.get();
+        if (head == cachedTail) {
+            cachedTail = tail.get();
+            if (head == cachedTail)
+                return null;
+        }
+
+        int index = (int) head & mask;
+        T element = (T) elements[index];
+        elements[index] = null;
+        this.head.lazySet(head + 1);
+        return element;
+    }
+
+    /*
+    Producer side, waits for room
+     */
+    public void put(T element) throws InterruptedException {
+        for (int spins = 0; !offer(element); spins++)
+            idle(spins);
+    }
+
+    /*
+    Consumer side, waits for an element
+     */
+    public T take() throws InterruptedException {
+        T element;
+        for (int spins = 0; (element = poll()) == null; spins++)
+            idle(spins);
+        return element;
+    }
+
+    private static void idle(int spins) throws InterruptedException {
+        if (spins < SPINS)
+            Thread.onSpinWait();
+        else {
+            LockSupport.parkNanos(PARK_NANOS);
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+    }
+}
@@ -6,10 +6,12 @@ public class ProcessInfo {
 
     private final int pid;
     private final String name;
+    private final int hash;
 
     public ProcessInfo(int pid, String name) {
         this.pid = pid;
         this.name = name;
+        this.hash = Objects.hash(pid, name);
     }
 
     public int getPid() {
@@ -25,12 +27,12 @@ public class ProcessInfo {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ProcessInfo process = (ProcessInfo) o;
-        return pid == process.pid && name.equals(process.name);
+        return pid == process.pid && hash == process.hash && name.equals(process.name);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(pid, name);
+        return hash;
     }
 
     public String toTwoPointsString() {
@@ -0,0 +1,105 @@
+package com.github.francescociraolo.trace;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+Interns the processes met while parsing a trace: a trace has a few hundred distinct tasks, but every record names
+one to three of them. Lookups go through a Table, owned by a single parsing thread, that finds processes straight
+from the bytes of their names and only on a miss asks the pool shared by the threads of the same trace
+ */
+public class ProcessInfoPool {
+
+    private final ConcurrentMap<ProcessInfo, ProcessInfo> processes;
+
+    public ProcessInfoPool() {
+        this.processes = new ConcurrentHashMap<>();
+    }
+
+    public ProcessInfo intern(ProcessInfo process) {
+        var interned = processes.putIfAbsent(process, process);
+        return interned != null ? interned : process;
+    }
+
+    public ProcessInfo intern(int pid, String name) {
+        return intern(new ProcessInfo(pid, name));
+    }
+
+    public int size() {
+        return processes.size();
+    }
+
+    public Table newTable() {
+        return new Table();
+    }
+
+    /*
+    Open addressing table on (pid, name bytes), not thread safe
+     */
+    public class Table {
+
+        private static final int INITIAL_CAPACITY = 256;
+
+        private ProcessInfo[] entries;
+        private int[] hashes;
+        private int size;
+
+        private Table() {
+            entries = new ProcessInfo[INITIAL_CAPACITY];
+            hashes = new int[INITIAL_CAPACITY];
+        }
+
+        /*
+        Names are ISO-8859-1 encoded, as in trace-cmd report output and trace.dat comm fields
+         */
+        public ProcessInfo intern(int pid, byte[] bytes, int from, int to) {
+            int hash = pid;
+            for (int i = from; i < to; i++)
+                hash = 31 * hash + (bytes[i] & 0xFF);
+            hash ^= hash >>> 16;
+
+            int mask = entries.length - 1;
+            for (int slot = hash & mask; entries[slot] != null; slot = (slot + 1) & mask)
+                if (hashes[slot] == hash && matches(entries[slot], pid, bytes, from, to))
+                    return entries[slot];
+
+            var process = ProcessInfoPool.this.intern(pid,
+                    new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+            add(process, hash);
+            return process;
+        }
+
+        private boolean matches(ProcessInfo process, int pid, byte[] bytes, int from, int to) {
+            var name = process.getName();
+            if (process.getPid() != pid || name.length() != to - from)
+                return false;
+            for (int i = 0; i < name.length(); i++)
+                if (name.charAt(i) != (bytes[from + i] & 0xFF))
+                    return false;
+            return true;
+        }
+
+        private void add(ProcessInfo process, int hash) {
+            if (2 * (size + 1) > entries.length) {
+                var oldEntries = entries;
+                var oldHashes = hashes;
+                entries = new ProcessInfo[oldEntries.length * 2];
+                hashes = new int[oldEntries.length * 2];
+                for (int i = 0; i < oldEntries.length; i++)
+                    if (oldEntries[i] != null)
+                        put(oldEntries[i], oldHashes[i]);
+            }
+            put(process, hash);
+            size++;
+        }
+
+        private void put(ProcessInfo process, int hash) {
+            int mask = entries.length - 1, slot = hash & mask;
+            while (entries[slot] != null)
+                slot = (slot + 1) & mask;
+            entries[slot] = process;
+            hashes[slot] = hash;
+        }
+    }
+}
@@ -12,7 +12,7 @@ public abstract class Record {
     protected final int core;
 
     /*
-    Keeping it in string form in order to avoid floating point errors
+    Keeping it in fixed point form in order to avoid floating point errors
     */
     protected final Timestamp timestamp;
     protected final RecordSpecification specification;
@@ -90,41 +90,128 @@ public abstract class Record {
         return getSpecification().getType();
     }
 
+    /*
+    Exact fixed point count of nanoseconds. The number of fractional digits of the text it was read from (6 in
+    trace-cmd report output, i.e. microseconds) is kept to print it back the same way
+     */
     public static class Timestamp implements Comparable<Timestamp> {
 
-        private final String asString;
-        private final double asDouble;
+        private static final long NANOS_PER_SECOND = 1_000_000_000L;
+        private static final int MAX_DIGITS = 9;
+        private static final int MAX_SECONDS_DIGITS = 9;
+        private static final long[] POWERS_OF_TEN = {
+                1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+        };
+
+        /* digits of timestamps not read from text, printed as a double */
+        private static final int NO_DIGITS = -1;
 
+        private final long nanos;
+        private final int digits;
+
+        private Timestamp(long nanos, int digits) {
+            this.nanos = nanos;
+            this.digits = digits;
+        }
+
+        /*
+        Plain "sec.frac" texts are read digit by digit, anything else goes through Double.parseDouble
+         */
         public Timestamp(String timestamp) {
-            this.asString = timestamp;
-            this.asDouble = Double.parseDouble(timestamp);
+            long seconds = 0, fraction = 0;
+            int secondsDigits = 0, digits = NO_DIGITS;
+            boolean plain = !timestamp.isEmpty();
+
+            for (int i = 0; i < timestamp.length() && plain; i++) {
+                char c = timestamp.charAt(i);
+                if (c == '.' && digits == NO_DIGITS)
+                    digits = 0;
+                else if (c < '0' || c > '9')
+                    plain = false;
+                else if (digits == NO_DIGITS) {
+                    plain = ++secondsDigits <= MAX_SECONDS_DIGITS;
+                    seconds = seconds * 10 + c - '0';
+                } else {
+                    plain = ++digits <= MAX_DIGITS;
+                    fraction = fraction * 10 + c - '0';
+                }
+            }
+
+            if (plain && secondsDigits > 0) {
+                digits = Math.max(digits, 0);
+                this.nanos = seconds * NANOS_PER_SECOND + fraction * POWERS_OF_TEN[MAX_DIGITS - digits];
+                this.digits = digits;
+            } else {
+                this.nanos = Math.round(Double.parseDouble(timestamp) * NANOS_PER_SECOND);
+                this.digits = MAX_DIGITS;
+            }
         }
 
         public Timestamp(double timestamp) {
-            this.asString = String.valueOf(timestamp);
-            this.asDouble = timestamp;
+            this(Math.round(timestamp * NANOS_PER_SECOND), NO_DIGITS);
+        }
+
+        /*
+        The digits are the fractional ones to print, 9 for nanoseconds, 6 for microseconds
+         */
+        public static Timestamp ofNanos(long nanos, int digits) {
+            if (digits < 0 || digits > MAX_DIGITS)
+                throw new IllegalArgumentException("Invalid number of digits: " + digits);
+            return new Timestamp(nanos, digits);
         }
 
         @Override
         public int compareTo(Timestamp o) {
-            return compareTo(o.asDouble);
+            return Long.compare(nanos, o.nanos);
         }
 
         public int compareTo(double time) {
-            return Double.compare(asDouble, time);
+            return Double.compare(getAsDouble(), time);
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        /*
+        Fractional digits printed by toString, -1 when printed as a double
+         */
+        public int getDigits() {
+            return digits;
         }
 
         public double getAsDouble() {
-            return asDouble;
+            return (double) nanos / NANOS_PER_SECOND;
+        }
+
+        public long nanosFrom(Timestamp other) {
+            return nanos - other.nanos;
         }
 
         public double timeFrom(Timestamp other) {
-            return asDouble - other.asDouble;
+            return (double) nanosFrom(other) / NANOS_PER_SECOND;
         }
 
         @Override
         public String toString() {
-            return asString;
+            if (digits == NO_DIGITS)
+                return String.valueOf(getAsDouble());
+
+            long absolute = Math.abs(nanos);
+            var builder = new StringBuilder(24);
+            if (nanos < 0)
+                builder.append('-');
+            builder.append(absolute / NANOS_PER_SECOND);
+
+            if (digits > 0) {
+                String fraction = String.valueOf(absolute % NANOS_PER_SECOND / POWERS_OF_TEN[MAX_DIGITS - digits]);
+                builder.append('.');
+                for (int i = fraction.length(); i < digits; i++)
+                    builder.append('0');
+                builder.append(fraction);
+            }
+
+            return builder.toString();
         }
     }
 }
@@ -2,6 +2,7 @@ package com.github.francescociraolo.trace;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -25,14 +26,18 @@ public interface RecordSpecification {
         private final Type type;
 
         private SchedWakeupFamilySpec(Type type, Matcher matcher) {
-            this.wakingProcess = new ProcessInfo(Integer.parseInt(matcher.group("pid")),
-                    matcher.group("processName"));
-            this.priority = Integer.parseInt(matcher.group("num"));
-            if (matcher.groupCount() == 6)
-                success = null;
-            else
-                this.success = matcher.group("success").equals("1");
-            this.cpu = Integer.parseInt(matcher.group("cpu"));
+            this(type,
+                    new ProcessInfo(Integer.parseInt(matcher.group("pid")), matcher.group("processName")),
+                    Integer.parseInt(matcher.group("num")),
+                    matcher.group("success") == null ? null : matcher.group("success").equals("1"),
+                    Integer.parseInt(matcher.group("cpu")));
+        }
+
+        public SchedWakeupFamilySpec(Type type, ProcessInfo wakingProcess, int priority, Boolean success, int cpu) {
+            this.wakingProcess = wakingProcess;
+            this.priority = priority;
+            this.success = success;
+            this.cpu = cpu;
             this.type = type;
         }
 
@@ -62,11 +67,21 @@ public interface RecordSpecification {
             return getWakingProcess().getPid() == pid;
         }
 
+        @Override
+        public boolean isPidRelated(IntPredicate pids) {
+            return pids.test(getWakingProcess().getPid());
+        }
+
         @Override
         public boolean isCoreRelated(int core) {
             return cpu == core;
         }
 
+        @Override
+        public boolean isCoreRelated(IntPredicate cores) {
+            return cores.test(cpu);
+        }
+
         public static SchedWakeupFamilySpec buildSchedWakeup(Matcher matcher) {
             return new SchedWakeupFamilySpec(Type.SCHED_WAKEUP, matcher);
         }
@@ -77,10 +92,10 @@ public interface RecordSpecification {
 
         @Override
         public String toString() {
-            return String.format("%s [%d] success=%d CPU:%03d",
+            return String.format("%s [%d]%s CPU:%03d",
                     wakingProcess.toTwoPointsString(),
                     priority,
-                    success ? 1 : 0,
+                    success == null ? "<CANT FIND FIELD success>" : String.format(" success=%d", success ? 1 : 0),
                     cpu);
         }
     }
@@ -96,12 +111,24 @@ public interface RecordSpecification {
         private final int nextPriority;
 
         public SchedSwitchSpec(Matcher matcher) {
-            this.previousProcess = new ProcessInfo(Integer.parseInt(matcher.group("ppid")), matcher.group("pprocess"));
-            this.previousPriority = Integer.parseInt(matcher.group("pprio"));
-            this.previousState = matcher.group("pstate").charAt(0);
-            this.nextProcess = new ProcessInfo(Integer.parseInt(matcher.group("npid")), matcher.group("nprocess"));
+            this(new ProcessInfo(Integer.parseInt(matcher.group("ppid")), matcher.group("pprocess")),
+                    Integer.parseInt(matcher.group("pprio")),
+                    matcher.group("pstate").charAt(0),
+                    new ProcessInfo(Integer.parseInt(matcher.group("npid")), matcher.group("nprocess")),
+                    Integer.parseInt(matcher.group("nprio")));
 //            this.nextPID = Integer.parseInt(matcher.group("npid"));
-            this.nextPriority = Integer.parseInt(matcher.group("nprio"));
+        }
+
+        public SchedSwitchSpec(ProcessInfo previousProcess,
+                               int previousPriority,
+                               char previousState,
+                               ProcessInfo nextProcess,
+                               int nextPriority) {
+            this.previousProcess = previousProcess;
+            this.previousPriority = previousPriority;
+            this.previousState = previousState;
+            this.nextProcess = nextProcess;
+            this.nextPriority = nextPriority;
         }
 
         public ProcessInfo getPreviousProcess() {
@@ -134,6 +161,11 @@ public interface RecordSpecification {
             return previousProcess.getPid() == pid || nextProcess.getPid() == pid;
         }
 
+        @Override
+        public boolean isPidRelated(IntPredicate pids) {
+            return pids.test(previousProcess.getPid()) || pids.test(nextProcess.getPid());
+        }
+
         @Override
         public String toString() {
             return String.format("%s [%d] %s ==> %s [%d]", previousProcess.toTwoPointsString(), previousPriority, previousState, nextProcess.toTwoPointsString(), nextPriority);
@@ -148,11 +180,17 @@ public interface RecordSpecification {
         private final int destinationCPU;
 
         private SchedMigrateTaskSpec(Matcher matcher) {
-            this.process = new ProcessInfo(Integer.parseInt(matcher.group("pid")), matcher.group("processName"));
+            this(new ProcessInfo(Integer.parseInt(matcher.group("pid")), matcher.group("processName")),
+                    Integer.parseInt(matcher.group("prio")),
+                    Integer.parseInt(matcher.group("ocpu")),
+                    Integer.parseInt(matcher.group("dcpu")));
+        }
 
-            this.priority = Integer.parseInt(matcher.group("prio"));
-            this.originCPU = Integer.parseInt(matcher.group("ocpu"));
-            this.destinationCPU = Integer.parseInt(matcher.group("dcpu"));
+        public SchedMigrateTaskSpec(ProcessInfo process, int priority, int originCPU, int destinationCPU) {
+            this.process = process;
+            this.priority = priority;
+            this.originCPU = originCPU;
+            this.destinationCPU = destinationCPU;
         }
 
         public ProcessInfo getProcess() {
@@ -189,11 +227,21 @@ public interface RecordSpecification {
             return getPid() == pid;
         }
 
+        @Override
+        public boolean isPidRelated(IntPredicate pids) {
+            return pids.test(getPid());
+        }
+
         @Override
         public boolean isCoreRelated(int core) {
             return originCPU == core || destinationCPU == core;
         }
 
+        @Override
+        public boolean isCoreRelated(IntPredicate cores) {
+            return cores.test(originCPU) || cores.test(destinationCPU);
+        }
+
         @Override
         public String toString() {
             return String.format("comm=%s pid=%d prio=%d orig_cpu=%d dest_cpu=%d", getProcessName(), getPid(), priority, originCPU, destinationCPU);
@@ -204,7 +252,7 @@ public interface RecordSpecification {
 
         private final String functionName;
 
-        private FunctionSpec(String functionName) {
+        public FunctionSpec(String functionName) {
             this.functionName = functionName;
         }
 
@@ -225,6 +273,8 @@ public interface RecordSpecification {
 
     class KernelStackSpec implements RecordSpecification {
 
+        public static final KernelStackSpec INSTANCE = new KernelStackSpec();
+
         private KernelStackSpec() {
         }
 
@@ -286,7 +336,7 @@ public interface RecordSpecification {
                 } else if (unit.isBlank())
                     throw new RuntimeException("Unit is empty by duration is not");
                 else
-                    res = new Duration(duration, unit);
+                    res = new Duration(duration, unit.strip());
 
 
                 return res;
@@ -304,9 +354,16 @@ public interface RecordSpecification {
         private final boolean closed;
 
         public FunctionEntrySpec(Matcher matcher) {
-            super(matcher.group("depth").length(), Duration.parse(matcher));
-            this.functionName = matcher.group("fname");
-            this.closed = matcher.group("type").equals(";");
+            this(matcher.group("depth").length(),
+                    Duration.parse(matcher),
+                    matcher.group("fname"),
+                    matcher.group("type").equals(";"));
+        }
+
+        public FunctionEntrySpec(int depth, Duration duration, String functionName, boolean closed) {
+            super(depth, duration);
+            this.functionName = functionName;
+            this.closed = closed;
         }
 
         public boolean isClosed() {
@@ -335,7 +392,11 @@ public interface RecordSpecification {
     class FunctionExitSpec extends FunctionGraphSpec {
 
         public FunctionExitSpec(Matcher matcher) {
-            super(matcher.group("depth").length(), Duration.parse(matcher));
+            this(matcher.group("depth").length(), Duration.parse(matcher));
+        }
+
+        public FunctionExitSpec(int depth, Duration duration) {
+            super(depth, duration);
         }
 
         @Override
@@ -357,10 +418,24 @@ public interface RecordSpecification {
         return false;
     }
 
+    /*
+    Same as isCoreRelated for any of the cores accepted, for sets of cores tested at once
+     */
+    default boolean isCoreRelated(IntPredicate cores) {
+        return false;
+    }
+
     default boolean isPidRelated(int pid) {
         return false;
     }
 
+    /*
+    Same as isPidRelated for any of the pids accepted, for sets of pids tested at once
+     */
+    default boolean isPidRelated(IntPredicate pids) {
+        return false;
+    }
+
     static RecordSpecification parse(String typeString, String message) {
         return Type.findTypeByString(typeString).map(t -> t.parse(message)).orElse(null);
     }
@@ -408,7 +483,7 @@ public interface RecordSpecification {
         ),
         KERNEL_STACK("kernel_stack",
                 TypeCategory.STACK_TRACE,
-                new KernelStackSpec());
+                KernelStackSpec.INSTANCE);
 
         private final String typeString;
         private final TypeCategory category;
@@ -509,13 +584,12 @@ public interface RecordSpecification {
         }
 
 
-        private static final Map<String, Type> typeByString = new TreeMap<>();
+        /* filled eagerly, records may be parsed by several threads at once */
+        private static final Map<String, Type> typeByString = Arrays
+                .stream(Type.values())
+                .collect(Collectors.toMap(Type::getTypeString, Function.identity(), (a, b) -> a, TreeMap::new));
 
         public static Optional<Type> findTypeByString(String typeString) {
-            if (typeByString.isEmpty())
-                typeByString.putAll(Arrays
-                        .stream(Type.values())
-                        .collect(Collectors.toMap(Type::getTypeString, Function.identity())));
             return Optional.ofNullable(typeByString.get(typeString));
         }
     }
@@ -41,13 +41,16 @@ public class Trace {
         public synchronized String next() throws IOException {
             if (nextChar == -1) throw new EOFException();
 
-            for (boolean newBlock = false, newLine = false; step() && !newBlock; ) {
+            /* the space opening this block was read by the previous call */
+            if (nextChar == ' ') stringBuilder.append(' ');
+
+            for (boolean newLine = false; step(); ) {
                 if (newLine) {
-                    if (!(newBlock = nextChar == ' ')) stringBuilder.append('\n');
-                    newLine = false;
+                    if (nextChar == ' ') break;
+                    stringBuilder.append('\n');
                 }
 
-                if (!newBlock && !(newLine = nextChar == '\n'))
+                if (!(newLine = nextChar == '\n'))
                     stringBuilder.append((char) nextChar);
             }
 
@@ -2,4 +2,8 @@ package com.github.francescociraolo.trace;
 
 public interface TraceTokenAnalyzer {
 
+    /*
+    Returns null if the token does not contain a record
+     */
+    Record analyze(String token);
 }
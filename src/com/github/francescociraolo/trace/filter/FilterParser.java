@@ -1,17 +1,24 @@
 package com.github.francescociraolo.trace.filter;
 
-import com.github.francescociraolo.trace.Record;
 import com.github.francescociraolo.trace.RecordSpecification;
 
 import java.util.*;
-import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class FilterParser {
 
     private interface FilterConstant {
 
-        Predicate<Record> parse(TermOperator operator, String... right);
+        RecordFilter parse(TermOperator operator, String... right);
+    }
+
+    private static final String TERM = "Expression term";
+
+    private static Set<Integer> ints(String... values) {
+        return Arrays
+                .stream(values)
+                .map(Integer::parseInt)
+                .collect(Collectors.toSet());
     }
 
     private static final Map<String, FilterConstant> constants = Map.of(
@@ -23,14 +30,8 @@ public class FilterParser {
                     case GTE:
                         throw new RuntimeException("Invalid operator " + operator + " for p constant");
                     case EQ:
-                        var pid = Integer.parseInt(right[0]);
-                        return record -> record.getProcessPid() == pid;
                     case IN:
-                        var set = Arrays
-                                .stream(right)
-                                .map(Integer::parseInt)
-                                .collect(Collectors.toSet());
-                        return record -> set.contains(record.getProcessPid());
+                        return new Terms.Pids(TERM, ints(right), true, false);
                     default:
                         throw new RuntimeException();
                 }
@@ -43,21 +44,8 @@ public class FilterParser {
                     case GTE:
                         throw new RuntimeException("Invalid operator " + operator + " for sp constant");
                     case EQ:
-                        var pid = Integer.parseInt(right[0]);
-                        return record -> record.getSpecification().isPidRelated(pid);
-//                        return record -> record.getPid() == pid || record.getSpecification().isPidRelated(pid);
                     case IN:
-                        var set = Arrays
-                                .stream(right)
-                                .map(Integer::parseInt)
-                                .collect(Collectors.toSet());
-                        return record -> {
-                            boolean found = false;
-                            Iterator<Integer> iterator = set.iterator();
-                            while (!found && iterator.hasNext())
-                                found = record.getSpecification().isPidRelated(iterator.next());
-                            return found;
-                        };
+                        return new Terms.Pids(TERM, ints(right), false, true);
                     default:
                         throw new RuntimeException();
                 }
@@ -70,14 +58,8 @@ public class FilterParser {
                     case GTE:
                         throw new RuntimeException("Invalid operator " + operator + " for c constant");
                     case EQ:
-                        var core = Integer.parseInt(right[0]);
-                        return record -> record.getCore() == core;
                     case IN:
-                        var set = Arrays
-                                .stream(right)
-                                .map(Integer::parseInt)
-                                .collect(Collectors.toSet());
-                        return record -> set.contains(record.getCore());
+                        return new Terms.Cores(TERM, ints(right), true, false);
                     default:
                         throw new RuntimeException();
                 }
@@ -90,22 +72,8 @@ public class FilterParser {
                     case GTE:
                         throw new RuntimeException("Invalid operator " + operator + " for sc constant");
                     case EQ:
-                        var core = Integer.parseInt(right[0]);
-                        return record -> record.getSpecification().isCoreRelated(core);
-//                        return record -> record.getCore() == core || record.getSpecification().isCoreRelated(core);
                     case IN:
-                        var set = Arrays
-                                .stream(right)
-                                .map(Integer::parseInt)
-                                .collect(Collectors.toSet());
-                        return record -> {
-                            boolean found = false;
-                            Iterator<Integer> iterator = set.iterator();
-                            while (!found && iterator.hasNext())
-                                found = record.getSpecification().isCoreRelated(iterator.next());
-                            return found;
-                        };
-//                        return record -> set.contains(record.getCore()) || record.getSpecification().hasCoreRelated(set);
+                        return new Terms.Cores(TERM, ints(right), false, true);
                     default:
                         throw new RuntimeException();
                 }
@@ -114,15 +82,15 @@ public class FilterParser {
                 var v = Double.parseDouble(right[0]);
                 switch (operator) {
                     case LT:
-                        return record -> record.getTimestamp().compareTo(v) < 0;
+                        return Terms.Time.below(TERM, null, v);
                     case GT:
-                        return record -> record.getTimestamp().compareTo(v) > 0;
+                        return Terms.Time.above(TERM, null, v);
                     case LTE:
-                        return record -> record.getTimestamp().compareTo(v) <= 0;
+                        return Terms.Time.atMost(TERM, null, v);
                     case GTE:
-                        return record -> record.getTimestamp().compareTo(v) >= 0;
+                        return Terms.Time.atLeast(TERM, null, v);
                     case EQ:
-                        return record -> record.getTimestamp().compareTo(v) == 0;
+                        return new Terms.Time(TERM, null, v, true, v, true);
                     case IN:
                         throw new RuntimeException("Invalid operator " + operator + " for t constant");
                     default:
@@ -138,9 +106,6 @@ public class FilterParser {
                         throw new RuntimeException("Invalid operator " + operator + " for type constant");
 
                     case EQ:
-                        var type = RecordSpecification.Type.findTypeByString(right[0]).orElseThrow();
-                        return record -> record.getSpecification().getType() == type;
-
                     case IN:
                         var set = Arrays
                                 .stream(right)
@@ -148,7 +113,7 @@ public class FilterParser {
                                 .map(Optional::orElseThrow)
                                 .collect(Collectors.toSet());
 
-                        return record -> set.contains(record.getSpecification().getType());
+                        return new Terms.Types(TERM, set);
 
                     default:
                         throw new RuntimeException();
@@ -179,14 +144,13 @@ public class FilterParser {
     }
 
     private RecordFilter parseString() {
-        var predicate = expr();
+        var filter = expr();
 
-        return new RecordFilter("Expression filter", new String(filterString)) {
-            @Override
-            public boolean test(Record record) {
-                return predicate.test(record);
-            }
-        };
+        return RecordFilter.of("Expression filter",
+                new String(filterString),
+                filter,
+                filter::candidates,
+                filter.constraint());
     }
 
     private void strip() {
@@ -251,8 +215,8 @@ public class FilterParser {
         return builder.toString();
     }
 
-    private Predicate<Record> term() {
-        Predicate<Record> predicate;
+    private RecordFilter term() {
+        RecordFilter predicate;
         strip();
 
         if (filterString[pos] == '(') {
@@ -285,25 +249,41 @@ public class FilterParser {
         return predicate;
     }
 
-    private Predicate<Record> expr() {
+    /*
+    Operators are applied left to right, runs of the same operator become a single flat filter
+     */
+    private RecordFilter expr() {
         strip();
-        Predicate<Record> p = term();
+        var operands = new ArrayList<RecordFilter>();
+        operands.add(term());
+        Operator current = null;
 
         for (; pos < filterString.length && filterString[pos] != ')'; ) {
             strip();
             var operator = exprOperator();
             var expr = term();
-            switch (operator) {
-                case AND:
-                    p = p.and(expr);
-                    break;
-                case OR:
-                    p = p.or(expr);
-                    break;
+            if (current != null && operator != current) {
+                var combined = combine(current, operands);
+                operands.clear();
+                operands.add(combined);
             }
+            current = operator;
+            operands.add(expr);
         }
 
-        return p;
+        return current == null ? operands.get(0) : combine(current, operands);
+    }
+
+    private static RecordFilter combine(Operator operator, List<RecordFilter> operands) {
+        var filters = operands.toArray(RecordFilter[]::new);
+        switch (operator) {
+            case AND:
+                return RecordFilter.all(filters);
+            case OR:
+                return RecordFilter.any(filters);
+            default:
+                throw new RuntimeException();
+        }
     }
 
     public static RecordFilter parse(String filterString) {
@@ -0,0 +1,157 @@
+package com.github.francescociraolo.trace.filter;
+
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.reader.Constraint;
+import com.github.francescociraolo.trace.store.PostingIndex;
+import com.github.francescociraolo.trace.store.PostingList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/*
+Combines a list of filters into one: filters on the same field are alternatives, filters on different fields must
+all accept a record. Alternatives are folded where possible (pid, core and type sets, overlapping time ranges), what
+is left is tested by adaptive filters, which measure how often each operand decides the outcome and how long it
+takes, and move the cheap and decisive ones first
+ */
+public class FilterPlanner {
+
+    /* evaluations between two reorderings */
+    private static final int REORDER_INTERVAL = 1 << 12;
+    /* one evaluation out of this many is timed */
+    private static final int SAMPLE_INTERVAL = 1 << 5;
+    /* nanoseconds assumed for an operand not timed yet */
+    private static final double DEFAULT_COST = 50;
+    private static final double MIN_RATE = 1e-3;
+
+    private FilterPlanner() {
+    }
+
+    public static RecordFilter plan(Collection<RecordFilter> filters) {
+        if (filters.isEmpty())
+            return RecordFilter.ALL;
+
+        var fields = new LinkedHashMap<String, List<RecordFilter>>();
+        for (RecordFilter filter : filters)
+            fields.computeIfAbsent(filter.getField(), field -> new ArrayList<>()).add(filter);
+
+        var groups = new ArrayList<RecordFilter>(fields.size());
+        for (List<RecordFilter> alternatives : fields.values())
+            groups.add(combine(alternatives.toArray(RecordFilter[]::new), false));
+
+        return combine(groups.toArray(RecordFilter[]::new), true);
+    }
+
+    private static RecordFilter combine(RecordFilter[] filters, boolean conjunction) {
+        filters = RecordFilter.fold(filters, conjunction);
+        return filters.length == 1 ? filters[0] : new Adaptive(filters, conjunction);
+    }
+
+    /*
+    Conjunction or disjunction of its operands, reordered every REORDER_INTERVAL evaluations by expected cost to
+    decide: the mean time of an operand over the rate it decides the outcome (rejects for a conjunction, accepts
+    for a disjunction). Statistics are halved at every reordering, so that they follow the part of the trace read
+     */
+    static class Adaptive extends RecordFilter {
+
+        private final boolean conjunction;
+        private final Operand[] operands;
+        private final RecordFilter combined;
+        private int evaluations;
+
+        private Adaptive(RecordFilter[] filters, boolean conjunction) {
+            super(filters[0].getField(), null);
+            this.conjunction = conjunction;
+            this.combined = conjunction ? RecordFilter.all(filters) : RecordFilter.any(filters);
+
+            /* filters checking header fields only come first, before anything is measured */
+            this.operands = Arrays.stream(filters)
+                    .sorted(Comparator.comparing(filter -> filter.constraint().isNone()))
+                    .map(Operand::new)
+                    .toArray(Operand[]::new);
+        }
+
+        @Override
+        public boolean test(Record record) {
+            boolean sample = ++evaluations % SAMPLE_INTERVAL == 0;
+            boolean result = !conjunction;
+
+            for (Operand operand : operands) {
+                boolean accepted;
+                if (sample) {
+                    long start = System.nanoTime();
+                    accepted = operand.filter.test(record);
+                    operand.nanos += System.nanoTime() - start;
+                    operand.timed++;
+                } else
+                    accepted = operand.filter.test(record);
+
+                operand.tested++;
+                if (accepted != conjunction) {
+                    operand.decided++;
+                    result = accepted;
+                    break;
+                }
+                result = accepted;
+            }
+
+            if (evaluations == REORDER_INTERVAL) {
+                reorder();
+                evaluations = 0;
+            }
+            return result;
+        }
+
+        private void reorder() {
+            Arrays.sort(operands, Comparator.comparingDouble(Operand::rank));
+            for (Operand operand : operands)
+                operand.decay();
+        }
+
+        @Override
+        public PostingList candidates(PostingIndex index) {
+            return combined.candidates(index);
+        }
+
+        @Override
+        public Constraint constraint() {
+            return combined.constraint();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s of %s", conjunction ? "All" : "Any",
+                    Arrays.toString(Arrays.stream(operands).map(operand -> operand.filter).toArray()));
+        }
+    }
+
+    private static class Operand {
+
+        private final RecordFilter filter;
+        private double tested;
+        private double decided;
+        private double nanos;
+        private double timed;
+
+        private Operand(RecordFilter filter) {
+            this.filter = filter;
+        }
+
+        private double rank() {
+            double cost = timed > 0 ? nanos / timed : DEFAULT_COST;
+            double rate = tested > 0 ? decided / tested : 0.5;
+            return cost / Math.max(rate, MIN_RATE);
+        }
+
+        private void decay() {
+            tested /= 2;
+            decided /= 2;
+            nanos /= 2;
+            timed /= 2;
+        }
+    }
+}
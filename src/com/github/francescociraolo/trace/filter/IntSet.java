@@ -0,0 +1,45 @@
+package com.github.francescociraolo.trace.filter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntPredicate;
+
+/*
+Set of ints for the IN lists of the filters, tested without boxing: a bitmap when the values are small and not
+negative (pids and cores), a sorted array otherwise
+ */
+final class IntSet implements IntPredicate {
+
+    private static final int MAX_BITMAP_VALUE = 1 << 22;
+
+    private final long[] words;
+    private final int[] values;
+
+    private IntSet(long[] words, int[] values) {
+        this.words = words;
+        this.values = values;
+    }
+
+    static IntSet of(Collection<Integer> collection) {
+        int[] values = collection.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        if (values.length == 0 || values[0] < 0 || values[values.length - 1] >= MAX_BITMAP_VALUE)
+            return new IntSet(null, values);
+
+        long[] words = new long[(values[values.length - 1] >> 6) + 1];
+        for (int value : values)
+            words[value >> 6] |= 1L << value;
+        return new IntSet(words, null);
+    }
+
+    boolean contains(int value) {
+        if (words == null)
+            return Arrays.binarySearch(values, value) >= 0;
+        int word = value >> 6;
+        return value >= 0 && word < words.length && (words[word] & (1L << value)) != 0;
+    }
+
+    @Override
+    public boolean test(int value) {
+        return contains(value);
+    }
+}
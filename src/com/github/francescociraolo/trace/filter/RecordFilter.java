@@ -1,7 +1,12 @@
 package com.github.francescociraolo.trace.filter;
 
 import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.reader.Constraint;
+import com.github.francescociraolo.trace.store.PostingIndex;
+import com.github.francescociraolo.trace.store.PostingList;
 
+import java.util.ArrayList;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 public abstract class RecordFilter implements Predicate<Record> {
@@ -30,6 +35,184 @@ public abstract class RecordFilter implements Predicate<Record> {
         return field;
     }
 
+    /*
+    The records of the index the filter may accept, null when it may accept any. Records out of the list are never
+    accepted, the ones in the list still have to be tested
+     */
+    public PostingList candidates(PostingIndex index) {
+        return null;
+    }
+
+    /*
+    Bounds on the header fields of the records the filter may accept, readers use it to skip the others
+     */
+    public Constraint constraint() {
+        return Constraint.NONE;
+    }
+
+    /*
+    A single filter accepting what this or the other one accepts, cheaper than testing both, null if there is none
+     */
+    RecordFilter foldOr(RecordFilter other) {
+        return null;
+    }
+
+    /*
+    A single filter accepting what both this and the other one accept, null if there is none
+     */
+    RecordFilter foldAnd(RecordFilter other) {
+        return null;
+    }
+
+    /*
+    Replaces the pairs that fold with their folding, keeping the order of the rest
+     */
+    static RecordFilter[] fold(RecordFilter[] filters, boolean and) {
+        var folded = new ArrayList<RecordFilter>(filters.length);
+        for (RecordFilter filter : filters) {
+            int i = 0;
+            for (; i < folded.size(); i++) {
+                var folding = and ? folded.get(i).foldAnd(filter) : folded.get(i).foldOr(filter);
+                if (folding != null) {
+                    folded.set(i, folding);
+                    break;
+                }
+            }
+            if (i == folded.size())
+                folded.add(filter);
+        }
+        return folded.toArray(RecordFilter[]::new);
+    }
+
+    public static RecordFilter of(String field, String value, Predicate<Record> predicate) {
+        return of(field, value, predicate, index -> null);
+    }
+
+    public static RecordFilter of(String field,
+                                  String value,
+                                  Predicate<Record> predicate,
+                                  Function<PostingIndex, PostingList> candidates) {
+        return of(field, value, predicate, candidates, Constraint.NONE);
+    }
+
+    public static RecordFilter of(String field,
+                                  String value,
+                                  Predicate<Record> predicate,
+                                  Function<PostingIndex, PostingList> candidates,
+                                  Constraint constraint) {
+        return new RecordFilter(field, value) {
+            @Override
+            public boolean test(Record record) {
+                return predicate.test(record);
+            }
+
+            @Override
+            public PostingList candidates(PostingIndex index) {
+                return candidates.apply(index);
+            }
+
+            @Override
+            public Constraint constraint() {
+                return constraint;
+            }
+        };
+    }
+
+    /*
+    Accepts what both accept, candidates and constraint of both
+     */
+    public static RecordFilter both(RecordFilter first, RecordFilter second) {
+        return all(first, second);
+    }
+
+    /*
+    Accepts what any of them accepts, candidates and constraint of either
+     */
+    public static RecordFilter either(RecordFilter first, RecordFilter second) {
+        return any(first, second);
+    }
+
+    /*
+    Accepts what all of them accept, testing them in order over a flat array rather than nesting pairs. Filters on
+    the same field are folded first where possible
+     */
+    public static RecordFilter all(RecordFilter... filters) {
+        var operands = fold(filters, true);
+        if (operands.length == 1)
+            return operands[0];
+
+        return new RecordFilter(operands[0].field, operands[0].value) {
+            @Override
+            public boolean test(Record record) {
+                for (RecordFilter operand : operands)
+                    if (!operand.test(record))
+                        return false;
+                return true;
+            }
+
+            @Override
+            public PostingList candidates(PostingIndex index) {
+                PostingList candidates = null;
+                for (RecordFilter operand : operands) {
+                    var operandCandidates = operand.candidates(index);
+                    if (operandCandidates != null)
+                        candidates = candidates == null ?
+                                operandCandidates :
+                                PostingList.intersection(candidates, operandCandidates);
+                }
+                return candidates;
+            }
+
+            @Override
+            public Constraint constraint() {
+                var constraint = Constraint.NONE;
+                for (RecordFilter operand : operands)
+                    constraint = constraint.intersect(operand.constraint());
+                return constraint;
+            }
+        };
+    }
+
+    /*
+    Accepts what any of them accepts, testing them in order over a flat array rather than nesting pairs. Filters on
+    the same field are folded first where possible
+     */
+    public static RecordFilter any(RecordFilter... filters) {
+        var operands = fold(filters, false);
+        if (operands.length == 1)
+            return operands[0];
+
+        return new RecordFilter(operands[0].field, operands[0].value) {
+            @Override
+            public boolean test(Record record) {
+                for (RecordFilter operand : operands)
+                    if (operand.test(record))
+                        return true;
+                return false;
+            }
+
+            @Override
+            public PostingList candidates(PostingIndex index) {
+                var candidates = PostingList.EMPTY;
+                for (RecordFilter operand : operands) {
+                    var operandCandidates = operand.candidates(index);
+                    if (operandCandidates == null)
+                        return null;
+                    candidates = PostingList.union(candidates, operandCandidates);
+                }
+                return candidates;
+            }
+
+            @Override
+            public Constraint constraint() {
+                var constraint = operands[0].constraint();
+                for (int i = 1; i < operands.length; i++)
+                    constraint = constraint.union(operands[i].constraint());
+                return constraint;
+            }
+        };
+    }
+
     @Override
     public String toString() {
         return String.format("Filter by %s: %s", field, value);
@@ -0,0 +1,297 @@
+package com.github.francescociraolo.trace.filter;
+
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.RecordSpecification;
+import com.github.francescociraolo.trace.reader.Constraint;
+import com.github.francescociraolo.trace.store.PostingIndex;
+import com.github.francescociraolo.trace.store.PostingList;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/*
+Filters on a single field, which fold with the filters of the same kind: a set of pids or cores (alternatives
+become the union of the sets) or of types, and a time range (ranges become their intersection or, when they
+overlap, the range covering both)
+ */
+final class Terms {
+
+    private Terms() {
+    }
+
+    private static String join(Collection<?> values) {
+        return values.stream().map(String::valueOf).collect(Collectors.joining(", "));
+    }
+
+    /*
+    Records of a process of the set (header) and/or whose specification refers to one of them
+     */
+    static class Pids extends RecordFilter {
+
+        private final TreeSet<Integer> values;
+        private final IntSet set;
+        private final boolean header;
+        private final boolean specification;
+
+        Pids(String field, Collection<Integer> values, boolean header, boolean specification) {
+            super(field, join(new TreeSet<>(values)));
+            this.values = new TreeSet<>(values);
+            this.set = IntSet.of(values);
+            this.header = header;
+            this.specification = specification;
+        }
+
+        @Override
+        public boolean test(Record record) {
+            return (header && set.contains(record.getProcessPid()))
+                    || (specification && record.getSpecification().isPidRelated(set));
+        }
+
+        @Override
+        public PostingList candidates(PostingIndex index) {
+            var candidates = PostingList.EMPTY;
+            for (int pid : values) {
+                if (header)
+                    candidates = PostingList.union(candidates, index.ofPid(pid));
+                if (specification)
+                    candidates = PostingList.union(candidates, index.ofRelatedPid(pid));
+            }
+            return candidates;
+        }
+
+        @Override
+        public Constraint constraint() {
+            return header && !specification ? Constraint.ofPids(values) : Constraint.NONE;
+        }
+
+        @Override
+        RecordFilter foldOr(RecordFilter other) {
+            if (!(other instanceof Pids) || !sameKind((Pids) other))
+                return null;
+            var union = new TreeSet<>(values);
+            union.addAll(((Pids) other).values);
+            return new Pids(getField(), union, header, specification);
+        }
+
+        /*
+        A specification may refer to two processes, so only the header pid folds
+         */
+        @Override
+        RecordFilter foldAnd(RecordFilter other) {
+            if (!(other instanceof Pids) || !sameKind((Pids) other) || specification)
+                return null;
+            var intersection = new TreeSet<>(values);
+            intersection.retainAll(((Pids) other).values);
+            return new Pids(getField(), intersection, header, false);
+        }
+
+        private boolean sameKind(Pids other) {
+            return header == other.header && specification == other.specification;
+        }
+    }
+
+    /*
+    Records on a core of the set (header) and/or whose specification refers to one of them
+     */
+    static class Cores extends RecordFilter {
+
+        private final TreeSet<Integer> values;
+        private final IntSet set;
+        private final boolean header;
+        private final boolean specification;
+
+        Cores(String field, Collection<Integer> values, boolean header, boolean specification) {
+            super(field, join(new TreeSet<>(values)));
+            this.values = new TreeSet<>(values);
+            this.set = IntSet.of(values);
+            this.header = header;
+            this.specification = specification;
+        }
+
+        @Override
+        public boolean test(Record record) {
+            return (header && set.contains(record.getCore()))
+                    || (specification && record.getSpecification().isCoreRelated(set));
+        }
+
+        @Override
+        public Constraint constraint() {
+            return header && !specification ? Constraint.ofCores(values) : Constraint.NONE;
+        }
+
+        @Override
+        RecordFilter foldOr(RecordFilter other) {
+            if (!(other instanceof Cores) || !sameKind((Cores) other))
+                return null;
+            var union = new TreeSet<>(values);
+            union.addAll(((Cores) other).values);
+            return new Cores(getField(), union, header, specification);
+        }
+
+        /*
+        A migration refers to two cores, so only the header core folds
+         */
+        @Override
+        RecordFilter foldAnd(RecordFilter other) {
+            if (!(other instanceof Cores) || !sameKind((Cores) other) || specification)
+                return null;
+            var intersection = new TreeSet<>(values);
+            intersection.retainAll(((Cores) other).values);
+            return new Cores(getField(), intersection, header, false);
+        }
+
+        private boolean sameKind(Cores other) {
+            return header == other.header && specification == other.specification;
+        }
+    }
+
+    static class Types extends RecordFilter {
+
+        private final EnumSet<RecordSpecification.Type> types;
+
+        Types(String field, Collection<RecordSpecification.Type> types) {
+            super(field, types.stream().map(RecordSpecification.Type::getTypeString).collect(Collectors.joining(", ")));
+            this.types = types.isEmpty() ? EnumSet.noneOf(RecordSpecification.Type.class) : EnumSet.copyOf(types);
+        }
+
+        @Override
+        public boolean test(Record record) {
+            return types.contains(record.getSpecification().getType());
+        }
+
+        @Override
+        public PostingList candidates(PostingIndex index) {
+            var candidates = PostingList.EMPTY;
+            for (RecordSpecification.Type type : types)
+                candidates = PostingList.union(candidates, index.ofType(type));
+            return candidates;
+        }
+
+        @Override
+        public Constraint constraint() {
+            return Constraint.ofTypes(types);
+        }
+
+        @Override
+        RecordFilter foldOr(RecordFilter other) {
+            if (!(other instanceof Types))
+                return null;
+            var union = EnumSet.copyOf(types);
+            union.addAll(((Types) other).types);
+            return new Types(getField(), union);
+        }
+
+        @Override
+        RecordFilter foldAnd(RecordFilter other) {
+            if (!(other instanceof Types))
+                return null;
+            var intersection = EnumSet.copyOf(types);
+            intersection.retainAll(((Types) other).types);
+            return new Types(getField(), intersection);
+        }
+    }
+
+    /*
+    Records whose timestamp, in seconds, lies between the bounds. Comparisons are the ones of
+    Record.Timestamp.compareTo(double)
+     */
+    static class Time extends RecordFilter {
+
+        private final double from;
+        private final boolean fromIncluded;
+        private final double to;
+        private final boolean toIncluded;
+
+        Time(String field, String value, double from, boolean fromIncluded, double to, boolean toIncluded) {
+            super(field, value != null ? value : describe(from, fromIncluded, to, toIncluded));
+            this.from = from;
+            this.fromIncluded = fromIncluded;
+            this.to = to;
+            this.toIncluded = toIncluded;
+        }
+
+        static Time atLeast(String field, String value, double from) {
+            return new Time(field, value, from, true, Double.POSITIVE_INFINITY, true);
+        }
+
+        static Time above(String field, String value, double from) {
+            return new Time(field, value, from, false, Double.POSITIVE_INFINITY, true);
+        }
+
+        static Time atMost(String field, String value, double to) {
+            return new Time(field, value, Double.NEGATIVE_INFINITY, true, to, true);
+        }
+
+        static Time below(String field, String value, double to) {
+            return new Time(field, value, Double.NEGATIVE_INFINITY, true, to, false);
+        }
+
+        private static String describe(double from, boolean fromIncluded, double to, boolean toIncluded) {
+            return String.format("%s%s, %s%s", fromIncluded ? "[" : "(", from, to, toIncluded ? "]" : ")");
+        }
+
+        @Override
+        public boolean test(Record record) {
+            var timestamp = record.getTimestamp();
+            int fromComparison = timestamp.compareTo(from);
+            if (fromComparison < 0 || (fromComparison == 0 && !fromIncluded))
+                return false;
+            int toComparison = timestamp.compareTo(to);
+            return toComparison < 0 || (toComparison == 0 && toIncluded);
+        }
+
+        /*
+        Records compare to the seconds as doubles, the bounds in nanoseconds leave a nanosecond for rounding
+         */
+        @Override
+        public Constraint constraint() {
+            if (Double.isNaN(from) || Double.isNaN(to))
+                return Constraint.NONE;
+            return Constraint.ofTime(from == Double.NEGATIVE_INFINITY ? Long.MIN_VALUE : (long) Math.floor(from * 1e9) - 1,
+                    to == Double.POSITIVE_INFINITY ? Long.MAX_VALUE : (long) Math.ceil(to * 1e9) + 1);
+        }
+
+        @Override
+        RecordFilter foldAnd(RecordFilter other) {
+            if (!(other instanceof Time))
+                return null;
+            var time = (Time) other;
+
+            int fromComparison = Double.compare(from, time.from), toComparison = Double.compare(to, time.to);
+            return new Time(getField(), null,
+                    fromComparison >= 0 ? from : time.from,
+                    fromComparison > 0 ? fromIncluded : fromComparison < 0 ? time.fromIncluded : fromIncluded && time.fromIncluded,
+                    toComparison <= 0 ? to : time.to,
+                    toComparison < 0 ? toIncluded : toComparison > 0 ? time.toIncluded : toIncluded && time.toIncluded);
+        }
+
+        /*
+        Only ranges that overlap or touch make a range
+         */
+        @Override
+        RecordFilter foldOr(RecordFilter other) {
+            if (!(other instanceof Time))
+                return null;
+            var time = (Time) other;
+            if (isBefore(time) || time.isBefore(this))
+                return null;
+
+            int fromComparison = Double.compare(from, time.from), toComparison = Double.compare(to, time.to);
+            return new Time(getField(), null,
+                    fromComparison <= 0 ? from : time.from,
+                    fromComparison < 0 ? fromIncluded : fromComparison > 0 ? time.fromIncluded : fromIncluded || time.fromIncluded,
+                    toComparison >= 0 ? to : time.to,
+                    toComparison > 0 ? toIncluded : toComparison < 0 ? time.toIncluded : toIncluded || time.toIncluded);
+        }
+
+        /*
+        Whether this range ends before the other one starts, leaving a gap between them
+         */
+        private boolean isBefore(Time other) {
+            int comparison = Double.compare(to, other.from);
+            return comparison < 0 || (comparison == 0 && !toIncluded && !other.fromIncluded);
+        }
+    }
+}
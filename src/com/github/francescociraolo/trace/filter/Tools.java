@@ -2,46 +2,29 @@ package com.github.francescociraolo.trace.filter;
 
 import com.github.francescociraolo.trace.RecordSpecification;
 import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.reader.Constraint;
+import com.github.francescociraolo.trace.store.PostingList;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Predicate;
 
 public class Tools {
 
     public static RecordFilter coreFilter(int core) {
-        return new RecordFilter("core", String.valueOf(core)) {
-            @Override
-            public boolean test(Record record) {
-                return record.getCore() == core;
-            }
-        };
+        return new Terms.Cores("core", Set.of(core), true, false);
     }
 
     public static RecordFilter coreAndSpecificationFilter(int core) {
-        return new RecordFilter("core", String.valueOf(core)) {
-            @Override
-            public boolean test(Record record) {
-                return record.getCore() == core || record.getSpecification().isCoreRelated(core);
-            }
-        };
+        return new Terms.Cores("core", Set.of(core), true, true);
     }
 
     public static RecordFilter pidFilter(int pid) {
-        return new RecordFilter("PID", String.valueOf(pid)) {
-            @Override
-            public boolean test(Record record) {
-                return record.isPidRelated(pid);
-            }
-        };
+        return new Terms.Pids("PID", Set.of(pid), true, true);
     }
 
     public static RecordFilter specificationPidFilter(int pid) {
-        return new RecordFilter("PID", String.valueOf(pid)) {
-            @Override
-            public boolean test(Record record) {
-                return record.getSpecification().isPidRelated(pid);
-            }
-        };
+        return new Terms.Pids("PID", Set.of(pid), false, true);
     }
 
     public static RecordFilter timestampFilter(Predicate<Double> timestampPredicate, String text) {
@@ -53,30 +36,39 @@ public class Tools {
         };
     }
 
+    /*
+    Timestamps from the seconds on, as a range that folds with the other ones
+     */
+    public static RecordFilter timestampFrom(double seconds, String text) {
+        return Terms.Time.atLeast("Timestamp", text, seconds);
+    }
+
+    /*
+    Timestamps up to the seconds, as a range that folds with the other ones
+     */
+    public static RecordFilter timestampTo(double seconds, String text) {
+        return Terms.Time.atMost("Timestamp", text, seconds);
+    }
+
     public static RecordFilter typeFilter(RecordSpecification.Type type) {
-        Objects.requireNonNull(type);
-        return new RecordFilter("type", type.getTypeString()) {
-            @Override
-            public boolean test(Record record) {
-                return record.getSpecification().getType() == type;
-            }
-        };
+        return new Terms.Types("type", Set.of(Objects.requireNonNull(type)));
     }
 
-    public static Predicate<Record> pidAndCoreFilter(int pid, int core) {
-        return record -> record.isPidRelated(pid) && record.getCore() == core;
+    public static RecordFilter pidAndCoreFilter(int pid, int core) {
+        return RecordFilter.both(pidFilter(pid), coreFilter(core));
     }
 
-    public static Predicate<Record> pidAndType(int pid, RecordSpecification.Type type) {
-        return record -> record.isPidRelated(pid) && record.getSpecification().getType() == type;
+    public static RecordFilter pidAndType(int pid, RecordSpecification.Type type) {
+        return RecordFilter.both(pidFilter(pid), typeFilter(type));
     }
 
-    public static Predicate<Record> processMigration(int pid) {
-        return record -> {
+    public static RecordFilter processMigration(int pid) {
+        return RecordFilter.of("migrated PID", String.valueOf(pid), record -> {
             var spec = record.getSpecification();
             return spec.getType() == RecordSpecification.Type.SCHED_MIGRATE_TASK
                     && ((RecordSpecification.SchedMigrateTaskSpec) spec).getPid() == pid;
-        };
+        }, index -> PostingList.intersection(index.ofType(RecordSpecification.Type.SCHED_MIGRATE_TASK),
+                index.ofRelatedPid(pid)), Constraint.ofTypes(Set.of(RecordSpecification.Type.SCHED_MIGRATE_TASK)));
     }
 
 }
@@ -0,0 +1,173 @@
+package com.github.francescociraolo.trace.peepers;
+
+import com.github.francescociraolo.trace.peepers.CPUsLoad.CommonStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Load of a core: switch times in nanoseconds and the status entered at each one, in a ring, each one with the time
+spent in every status and the entries of every status before it (since the first switch, dropped ones included).
+The load of a window takes two binary searches, none for a window from the oldest entry kept to the latest one.
+Switches come in time order
+ */
+class CoreLoad {
+
+    private static final CommonStatus[] STATUSES = CommonStatus.values();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] times;
+    private byte[] statuses;
+    private long[][] spent;
+    private int[][] entries;
+    private int head, size, mask;
+
+    CoreLoad() {
+        clear();
+    }
+
+    void update(CommonStatus element, long time) {
+        if (size == times.length)
+            grow();
+
+        int slot = slot(size);
+        if (size > 0) {
+            int previous = slot(size - 1);
+            for (int status = 0; status < STATUSES.length; status++) {
+                boolean same = status == statuses[previous];
+                spent[status][slot] = spent[status][previous] + (same ? time - times[previous] : 0);
+                entries[status][slot] = entries[status][previous] + (same ? 1 : 0);
+            }
+        }
+
+        times[slot] = time;
+        statuses[slot] = (byte) element.ordinal();
+        size++;
+    }
+
+    /*
+    Drops the entries over before the time, the one running then is kept
+     */
+    void dropBefore(long time) {
+        while (size > 1 && times[slot(1)] < time) {
+            head = (head + 1) & mask;
+            size--;
+        }
+    }
+
+    private void grow() {
+        int capacity = times.length * 2;
+        times = unwrap(times, new long[capacity]);
+        statuses = unwrap(statuses, new byte[capacity]);
+        for (int status = 0; status < STATUSES.length; status++) {
+            spent[status] = unwrap(spent[status], new long[capacity]);
+            entries[status] = unwrap(entries[status], new int[capacity]);
+        }
+        head = 0;
+        mask = capacity - 1;
+    }
+
+    private <A> A unwrap(A from, A to) {
+        int first = mask + 1 - head;
+        System.arraycopy(from, head, to, 0, first);
+        System.arraycopy(from, 0, to, first, head);
+        return to;
+    }
+
+    void clear() {
+        times = new long[INITIAL_CAPACITY];
+        statuses = new byte[INITIAL_CAPACITY];
+        spent = new long[STATUSES.length][INITIAL_CAPACITY];
+        entries = new int[STATUSES.length][INITIAL_CAPACITY];
+        head = size = 0;
+        mask = INITIAL_CAPACITY - 1;
+    }
+
+    private int slot(int index) {
+        return (head + index) & mask;
+    }
+
+    private long time(int index) {
+        return times[slot(index)];
+    }
+
+    /*
+    Share of [start, end] spent in each status met there, UNKNOWN before the first switch. Each entry lasts until
+    the next one, the last one until the end
+     */
+    Map<CommonStatus, Double> computeLoad(long start, long end) {
+        long[] times = new long[STATUSES.length];
+        boolean[] met = new boolean[STATUSES.length];
+        long total = 0, nextTime = size > 0 ? time(0) : end;
+
+        if (start < nextTime) {
+            total = nextTime - start;
+            times[CommonStatus.UNKNOWN.ordinal()] = total;
+            met[CommonStatus.UNKNOWN.ordinal()] = true;
+        }
+
+        /* entries from the one running at start to the last one not after end */
+        int from = size < 2 || time(1) >= start ? 0 : search(start, false) - 1;
+        int to = size == 0 || time(size - 1) <= end ? size : search(end, true);
+
+        if (from < to) {
+            total += add(from, start, end, times, met);
+            if (to - 1 > from)
+                total += add(to - 1, start, end, times, met);
+
+            /* the ones in between are whole */
+            if (to - 1 > from + 1) {
+                int first = slot(from + 1), last = slot(to - 1);
+                for (int status = 0; status < STATUSES.length; status++)
+                    if (entries[status][last] != entries[status][first]) {
+                        long delta = spent[status][last] - spent[status][first];
+                        times[status] += delta;
+                        total += delta;
+                        met[status] = true;
+                    }
+            }
+        }
+
+        HashMap<CommonStatus, Double> load = new HashMap<>();
+        for (int status = 0; status < STATUSES.length; status++)
+            if (met[status])
+                load.put(STATUSES[status], (double) times[status] / total);
+
+        return load;
+    }
+
+    /*
+    The part of [start, end] covered by the entry
+     */
+    private long add(int index, long start, long end, long[] times, boolean[] met) {
+        long nextTime = index + 1 < size ? time(index + 1) : end;
+        if (nextTime < start)
+            return 0;
+
+        int status = statuses[slot(index)];
+        long delta = Math.min(nextTime, end) - Math.max(time(index), start);
+        times[status] += delta;
+        met[status] = true;
+        return delta;
+    }
+
+    /*
+    Index of the first entry after the time, or from the time on when not strictly
+     */
+    private int search(long time, boolean strictly) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long current = time(middle);
+            if (current < time || strictly && current == time)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    static long nanos(double seconds) {
+        return Math.round(seconds * 1e9);
+    }
+}
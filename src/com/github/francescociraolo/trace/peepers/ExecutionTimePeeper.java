@@ -1,23 +1,59 @@
 package com.github.francescociraolo.trace.peepers;
 
+import com.github.francescociraolo.datastructures.IndexTable;
 import com.github.francescociraolo.datastructures.SlightlyMutableArray;
 import com.github.francescociraolo.trace.ProcessInfo;
 import com.github.francescociraolo.trace.Record;
 import com.github.francescociraolo.trace.RecordSpecification;
-import com.github.francescociraolo.trace.reader.RecordPeeper;
+import com.github.francescociraolo.trace.reader.CoreShardedPeeper;
 
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 
-public class ExecutionTimePeeper implements RecordPeeper {
+/*
+Execution times are kept by the slot of the process in a table, a switch allocates nothing once its processes
+are known
+ */
+public class ExecutionTimePeeper implements CoreShardedPeeper<ExecutionTimePeeper> {
 
     private final SlightlyMutableArray<EnteringPointData> tmp;
-    private final Map<ProcessInfo, Double> executionTime;
+    private final IndexTable<ProcessInfo> processes;
+    private double[] executionTime;
 
     public ExecutionTimePeeper() {
         int processorsCount = Runtime.getRuntime().availableProcessors();
         tmp = new SlightlyMutableArray<>(processorsCount, () -> new EnteringPointData(0, null));
-        executionTime = new HashMap<>();
+        processes = new IndexTable<>();
+        executionTime = new double[64];
+    }
+
+    @Override
+    public ExecutionTimePeeper newShard() {
+        return new ExecutionTimePeeper();
+    }
+
+    /*
+    Execution times of a process on different cores are summed
+     */
+    @Override
+    public void merge(int core, ExecutionTimePeeper shard) {
+        tmp.replace(core, shard.tmp.get(core));
+        for (int slot = 0; slot < shard.processes.size(); slot++)
+            add(shard.processes.get(slot), shard.executionTime[slot]);
+    }
+
+    private void add(ProcessInfo process, double time) {
+        int slot = processes.slot(process);
+        if (slot == executionTime.length)
+            executionTime = Arrays.copyOf(executionTime, slot * 2);
+        executionTime[slot] += time;
+    }
+
+    @Override
+    public EnumSet<RecordSpecification.Type> interests() {
+        return EnumSet.of(RecordSpecification.Type.SCHED_SWITCH);
     }
 
     @Override
@@ -31,23 +67,24 @@ public class ExecutionTimePeeper implements RecordPeeper {
             ProcessInfo previousProcess = spec.getPreviousProcess();
 
             EnteringPointData enteringPointData = tmp.get(record.getCore());
-            if (previousProcess.equals(enteringPointData.processInfo)) {
-                double lastTimestamp = executionTime.getOrDefault(previousProcess, 0D),
-                        deltaTimestamp = timestamp - enteringPointData.enteringTime;
-                executionTime.put(previousProcess, deltaTimestamp + lastTimestamp);
-            }
+            if (previousProcess.equals(enteringPointData.processInfo))
+                add(previousProcess, timestamp - enteringPointData.enteringTime);
 
-            tmp.replace(record.getCore(), new EnteringPointData(timestamp, spec.getNextProcess()));
+            enteringPointData.enteringTime = timestamp;
+            enteringPointData.processInfo = spec.getNextProcess();
         }
     }
 
     public Map<ProcessInfo, Double> getExecutionTime() {
+        var executionTime = new HashMap<ProcessInfo, Double>(processes.size() * 2);
+        for (int slot = 0; slot < processes.size(); slot++)
+            executionTime.put(processes.get(slot), this.executionTime[slot]);
         return Map.copyOf(executionTime);
     }
 
     private static class EnteringPointData {
-        private final double enteringTime;
-        private final ProcessInfo processInfo;
+        private double enteringTime;
+        private ProcessInfo processInfo;
 
         private EnteringPointData(double enteringTime, ProcessInfo processInfo) {
             this.enteringTime = enteringTime;
@@ -8,6 +8,7 @@ import com.github.francescociraolo.trace.reader.RecordPeeper;
 import com.github.francescociraolo.trace.ProcessInfo;
 import com.github.francescociraolo.trace.Record;
 
+import java.util.EnumSet;
 import java.util.List;
 
 public class LastWakeup implements RecordPeeper {
@@ -20,6 +21,11 @@ public class LastWakeup implements RecordPeeper {
         coreData = new SlightlyMutableArray<>(cores, () -> new MaxSizeList<>(2));
     }
 
+    @Override
+    public EnumSet<RecordSpecification.Type> interests() {
+        return EnumSet.of(RecordSpecification.Type.SCHED_WAKEUP, RecordSpecification.Type.SCHED_WAKEUP_NEW);
+    }
+
     @Override
     public void peep(Record record) {
         RecordSpecification.Type type = record.getSpecification().getType();
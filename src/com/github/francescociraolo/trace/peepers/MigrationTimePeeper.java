@@ -5,6 +5,7 @@ import com.github.francescociraolo.trace.Record;
 import com.github.francescociraolo.trace.RecordSpecification;
 import com.github.francescociraolo.trace.reader.RecordPeeper;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +31,11 @@ public class MigrationTimePeeper implements RecordPeeper {
         return data.get(process);
     }
 
+    @Override
+    public EnumSet<RecordSpecification.Type> interests() {
+        return EnumSet.of(RecordSpecification.Type.SCHED_SWITCH, RecordSpecification.Type.SCHED_MIGRATE_TASK);
+    }
+
     @Override
     public void peep(Record record) {
         switch (record.getType()) {
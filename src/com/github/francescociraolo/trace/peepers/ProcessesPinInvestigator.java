@@ -6,6 +6,7 @@ import com.github.francescociraolo.trace.RecordSpecification;
 import com.github.francescociraolo.trace.reader.RecordPeeper;
 import com.github.francescociraolo.trace.ProcessInfo;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,6 +18,11 @@ public class ProcessesPinInvestigator implements RecordPeeper {
         data = new HashMap<>();
     }
 
+    @Override
+    public EnumSet<RecordSpecification.Type> interests() {
+        return EnumSet.of(RecordSpecification.Type.SCHED_WAKEUP);
+    }
+
     @Override
     public void peep(Record record) {
         ProcessInfo process = null;
@@ -41,6 +47,10 @@ public class ProcessesPinInvestigator implements RecordPeeper {
         }
     }
 
+    public void clear() {
+        data.clear();
+    }
+
     public Map<ProcessInfo, SlightlyMutableArray<Integer>> getData() {
         return data;
     }
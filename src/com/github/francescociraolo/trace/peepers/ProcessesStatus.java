@@ -3,13 +3,14 @@ package com.github.francescociraolo.trace.peepers;
 import com.github.francescociraolo.datastructures.SlightlyMutableArray;
 import com.github.francescociraolo.trace.Record;
 import com.github.francescociraolo.trace.RecordSpecification;
-import com.github.francescociraolo.trace.reader.RecordPeeper;
+import com.github.francescociraolo.trace.reader.CoreShardedPeeper;
 
 import com.github.francescociraolo.trace.ProcessInfo;
 
+import java.util.EnumSet;
 import java.util.List;
 
-public class ProcessesStatus implements RecordPeeper {
+public class ProcessesStatus implements CoreShardedPeeper<ProcessesStatus> {
     private SlightlyMutableArray<ProcessInfo> processes;
 
 
@@ -18,6 +19,21 @@ public class ProcessesStatus implements RecordPeeper {
         this.processes = new SlightlyMutableArray<>(cores);
     }
 
+    @Override
+    public ProcessesStatus newShard() {
+        return new ProcessesStatus();
+    }
+
+    @Override
+    public void merge(int core, ProcessesStatus shard) {
+        processes.replace(core, shard.processes.get(core));
+    }
+
+    @Override
+    public EnumSet<RecordSpecification.Type> interests() {
+        return EnumSet.of(RecordSpecification.Type.SCHED_SWITCH);
+    }
+
     @Override
     public void peep(Record record) {
         var specification = record.getSpecification();
@@ -28,6 +44,14 @@ public class ProcessesStatus implements RecordPeeper {
         }
     }
 
+    /*
+    No core is known to run anything until it switches again
+     */
+    public void clear() {
+        for (int core = 0; core < processes.size(); core++)
+            processes.replace(core, null);
+    }
+
     public List<ProcessInfo> getProcesses() {
         return processes;
     }
@@ -17,4 +17,9 @@ public class RecordsCounter implements RecordPeeper {
     public void peep(Record record) {
         count++;
     }
+
+    @Override
+    public void peepBatch(Record[] batch, int n) {
+        count += n;
+    }
 }
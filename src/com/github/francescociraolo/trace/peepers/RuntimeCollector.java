@@ -4,13 +4,14 @@ import com.github.francescociraolo.datastructures.SlightlyMutableArray;
 import com.github.francescociraolo.trace.ProcessInfo;
 import com.github.francescociraolo.trace.Record;
 import com.github.francescociraolo.trace.RecordSpecification;
-import com.github.francescociraolo.trace.reader.RecordPeeper;
+import com.github.francescociraolo.trace.reader.CoreShardedPeeper;
 
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.stream.Stream;
 
-public class RuntimeCollector implements RecordPeeper {
+public class RuntimeCollector implements CoreShardedPeeper<RuntimeCollector> {
 
     private final SlightlyMutableArray<Record> records;
     private final List<RuntimeData> runtimeDataList;
@@ -21,6 +22,25 @@ public class RuntimeCollector implements RecordPeeper {
         runtimeDataList = new LinkedList<>();
     }
 
+    @Override
+    public RuntimeCollector newShard() {
+        return new RuntimeCollector();
+    }
+
+    /*
+    Runtimes of the core follow the ones merged before, instead of being interleaved by time
+     */
+    @Override
+    public void merge(int core, RuntimeCollector shard) {
+        records.replace(core, shard.records.get(core));
+        runtimeDataList.addAll(shard.runtimeDataList);
+    }
+
+    @Override
+    public EnumSet<RecordSpecification.Type> interests() {
+        return EnumSet.of(RecordSpecification.Type.SCHED_SWITCH);
+    }
+
     @Override
     public void peep(Record record) {
         if (record.getType() == RecordSpecification.Type.SCHED_SWITCH) {
@@ -1,26 +1,56 @@
 package com.github.francescociraolo.trace.peepers;
 
+import com.github.francescociraolo.datastructures.IndexTable;
 import com.github.francescociraolo.datastructures.SlightlyMutableArray;
 import com.github.francescociraolo.trace.ProcessInfo;
 import com.github.francescociraolo.trace.Record;
 import com.github.francescociraolo.trace.RecordSpecification;
-import com.github.francescociraolo.trace.reader.RecordPeeper;
+import com.github.francescociraolo.trace.reader.CoreShardedPeeper;
 
 import java.util.*;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Collectors;
 
-public class SliceCollector implements RecordPeeper {
+/*
+Times on each core are kept by the slot of the process in a table shared by the cores, a switch allocates nothing
+once its processes are known. A reset starts a new epoch: what was stamped with an earlier one counts as empty when
+next met, so resetting does not depend on how many cores and processes were seen
+ */
+public class SliceCollector implements CoreShardedPeeper<SliceCollector> {
 
     private final SlightlyMutableArray<TmpData> tmp;
-    private final SlightlyMutableArray<Map<ProcessInfo, Double>> results;
-    private final SlightlyMutableArray<Map<ProcessInfo, Record.Timestamp>> firstSwitch;
+    private final IndexTable<ProcessInfo> processes;
+    private final SlightlyMutableArray<CoreResults> results;
     private Record.Timestamp lastResetTimestamp;
+    private long epoch = 1;
 
     public SliceCollector() {
         int coresCount = Runtime.getRuntime().availableProcessors();
-        tmp = new SlightlyMutableArray<>(coresCount, () -> new TmpData(null, new Record.Timestamp("0")));
-        results = new SlightlyMutableArray<>(coresCount, HashMap::new);
-        firstSwitch = new SlightlyMutableArray<>(coresCount, HashMap::new);
+        tmp = new SlightlyMutableArray<>(coresCount, () -> new TmpData(null, new Record.Timestamp("0"), epoch));
+        processes = new IndexTable<>();
+        results = new SlightlyMutableArray<>(coresCount, CoreResults::new);
+    }
+
+    @Override
+    public SliceCollector newShard() {
+        return new SliceCollector();
+    }
+
+    /*
+    The first record of the trace is the earliest first record of the cores
+     */
+    @Override
+    public void merge(int core, SliceCollector shard) {
+        var shardTmp = shard.tmp(core);
+        tmp.replace(core, new TmpData(shardTmp.process, shardTmp.timestamp, epoch));
+        var merged = new CoreResults().at(epoch);
+        var shardResults = shard.results(core);
+        shardResults.forEach((slot, time) -> merged.add(processes.slot(shard.processes.get(slot)), time));
+        shardResults.forEachFirst((timestamp, slot) -> merged.enter(processes.slot(shard.processes.get(slot)), timestamp));
+        results.replace(core, merged);
+        if (shard.lastResetTimestamp != null
+                && (lastResetTimestamp == null || shard.lastResetTimestamp.compareTo(lastResetTimestamp) < 0))
+            lastResetTimestamp = shard.lastResetTimestamp;
     }
 
     @Override
@@ -33,14 +63,32 @@ public class SliceCollector implements RecordPeeper {
             Record.Timestamp timestamp = record.getTimestamp();
             RecordSpecification.SchedSwitchSpec spec = (RecordSpecification.SchedSwitchSpec) specification;
             ProcessInfo previous = spec.getPreviousProcess(), next = spec.getNextProcess();
-            double delta = tmp.get(core).update(timestamp, previous, next);
-            Map<ProcessInfo, Double> result = results.get(core);
-            double value = result.getOrDefault(previous, 0D) + delta;
-            result.put(previous, value);
-            Map<ProcessInfo, Record.Timestamp> first = firstSwitch.get(core);
-            if (!first.containsKey(next))
-                first.put(next, timestamp);
+            double delta = tmp(core).update(timestamp, previous, next);
+            CoreResults coreResults = results(core);
+            coreResults.add(processes.slot(previous), delta);
+            coreResults.enter(processes.slot(next), timestamp);
+        }
+    }
+
+    /*
+    The state of the core as of the current epoch: a core not met since the last reset restarts from it
+     */
+    private TmpData tmp(int core) {
+        TmpData data = tmp.get(core);
+        if (data.epoch != epoch) {
+            data.timestamp = lastResetTimestamp;
+            data.epoch = epoch;
         }
+        return data;
+    }
+
+    private CoreResults results(int core) {
+        return results.get(core).at(epoch);
+    }
+
+    private void reset(Record.Timestamp timestamp) {
+        epoch++;
+        lastResetTimestamp = timestamp;
     }
 
     public static class ProcessData {
@@ -66,45 +114,22 @@ public class SliceCollector implements RecordPeeper {
     }
 
     public double getTimeAndReset(Record.Timestamp timestamp, int core, ProcessInfo processInfo) {
-        Double res = results.get(core).get(processInfo);
-
-        int i = 0;
-        for (; i < results.size(); i++) {
-            tmp.get(i).reset(timestamp);
-            results.get(i).clear();
-            firstSwitch.get(i).clear();
-        }
+        Double res = results(core).get(processes.find(processInfo));
 
-        for (; i < tmp.size(); i++) {
-            tmp.get(i).reset(timestamp);
-            firstSwitch.get(i).clear();
-        }
-
-        lastResetTimestamp = timestamp;
+        reset(timestamp);
 
         return res;
     }
 
     public ProcessData extractAndReset(Record.Timestamp timestamp, int core, ProcessInfo processInfo) {
-        Map<ProcessInfo, Double> map = results.get(core);
+        CoreResults coreResults = results(core);
+        int slot = processes.find(processInfo);
         double delta = timestamp.timeFrom(lastResetTimestamp);
         ProcessData data = new ProcessData(processInfo,
-                firstSwitch.get(core).get(processInfo),
-                map.get(processInfo) / delta);
+                coreResults.first(slot),
+                coreResults.get(slot) / delta);
 
-        int i = 0;
-        for (; i < results.size(); i++) {
-            tmp.get(i).reset(timestamp);
-            results.get(i).clear();
-            firstSwitch.get(i).clear();
-        }
-
-        for (; i < tmp.size(); i++) {
-            tmp.get(i).reset(timestamp);
-            firstSwitch.get(i).clear();
-        }
-
-        lastResetTimestamp = timestamp;
+        reset(timestamp);
 
         return data;
     }
@@ -118,28 +143,16 @@ public class SliceCollector implements RecordPeeper {
 
         for (int core : cores) {
 
-            Map<ProcessInfo, Double> map = results.get(core);
             ArrayList<ProcessData> data = new ArrayList<>();
 
-            for (ProcessInfo processInfo : map.keySet())
-                data.add(new ProcessData(processInfo, firstSwitch.get(core).get(processInfo), map.get(processInfo) / delta));
+            CoreResults coreResults = results(core);
+            coreResults.forEach((slot, time) ->
+                    data.add(new ProcessData(processes.get(slot), coreResults.first(slot), time / delta)));
 
             resultsMap.put(core, data);
         }
 
-        int i = 0;
-        for (; i < results.size(); i++) {
-            tmp.get(i).reset(timestamp);
-            results.get(i).clear();
-            firstSwitch.get(i).clear();
-        }
-
-        for (; i < tmp.size(); i++) {
-            tmp.get(i).reset(timestamp);
-            firstSwitch.get(i).clear();
-        }
-
-        lastResetTimestamp = timestamp;
+        reset(timestamp);
 
         return resultsMap;
     }
@@ -148,40 +161,127 @@ public class SliceCollector implements RecordPeeper {
     public void printAndReset(Record.Timestamp timestamp, RecordPrinter printer, long size, int... toPrintCores) {
         double delta = timestamp.timeFrom(lastResetTimestamp);
         for (int core : toPrintCores) {
-            Map<ProcessInfo, Double> map = results.get(core);
+            CoreResults coreResults = results(core);
+            Map<ProcessInfo, Double> map = coreResults.toMap(processes);
             List<ProcessData> data = map.keySet()
                     .stream()
                     .sorted(Comparator.comparingDouble(map::get).reversed())
                     .limit(size)
                     .map(processInfo -> new ProcessData(processInfo,
-                            firstSwitch.get(core).get(processInfo),
+                            coreResults.first(processes.find(processInfo)),
                             map.get(processInfo) / delta))
                     .collect(Collectors.toList());
             printer.printCoreData(core, data);
         }
 
-        int i = 0;
-        for (; i < results.size(); i++) {
-            tmp.get(i).reset(timestamp);
-            results.get(i).clear();
-            firstSwitch.get(i).clear();
+        reset(timestamp);
+    }
+
+    @FunctionalInterface
+    private interface SlotConsumer {
+
+        void accept(int slot, double time);
+    }
+
+    /*
+    Time of the processes on a core and the first time they entered it since the last reset, by slot. Each slot is
+    stamped with the epoch it was last written in, a slot of an earlier epoch counts as not met
+     */
+    private static class CoreResults {
+
+        private double[] times = new double[16];
+        private long[] timeEpochs = new long[16];
+        private Record.Timestamp[] firsts = new Record.Timestamp[16];
+        private long[] firstEpochs = new long[16];
+        private int[] metSlots = new int[16];
+        private int count;
+        private long epoch;
+
+        /*
+        Drops the slots met in an earlier epoch from the list of the met ones
+         */
+        private CoreResults at(long epoch) {
+            if (this.epoch != epoch) {
+                this.epoch = epoch;
+                count = 0;
+            }
+            return this;
         }
 
-        for (; i < tmp.size(); i++) {
-            tmp.get(i).reset(timestamp);
-            firstSwitch.get(i).clear();
+        private void ensure(int slot) {
+            if (slot >= times.length) {
+                int length = Math.max(slot + 1, times.length * 2);
+                times = Arrays.copyOf(times, length);
+                timeEpochs = Arrays.copyOf(timeEpochs, length);
+                firsts = Arrays.copyOf(firsts, length);
+                firstEpochs = Arrays.copyOf(firstEpochs, length);
+            }
         }
 
-        lastResetTimestamp = timestamp;
+        private void add(int slot, double time) {
+            ensure(slot);
+            if (timeEpochs[slot] != epoch) {
+                timeEpochs[slot] = epoch;
+                times[slot] = 0;
+                if (count == metSlots.length)
+                    metSlots = Arrays.copyOf(metSlots, count * 2);
+                metSlots[count++] = slot;
+            }
+            times[slot] += time;
+        }
+
+        /*
+        Null for a process not met since the last reset
+         */
+        private Double get(int slot) {
+            return slot >= 0 && slot < times.length && timeEpochs[slot] == epoch ? times[slot] : null;
+        }
+
+        /*
+        Keeps the first timestamp the process entered the core at
+         */
+        private void enter(int slot, Record.Timestamp timestamp) {
+            ensure(slot);
+            if (firstEpochs[slot] != epoch) {
+                firstEpochs[slot] = epoch;
+                firsts[slot] = timestamp;
+            }
+        }
+
+        /*
+        Null for a process not entered since the last reset
+         */
+        private Record.Timestamp first(int slot) {
+            return slot >= 0 && slot < firsts.length && firstEpochs[slot] == epoch ? firsts[slot] : null;
+        }
+
+        private void forEach(SlotConsumer consumer) {
+            for (int i = 0; i < count; i++)
+                consumer.accept(metSlots[i], times[metSlots[i]]);
+        }
+
+        private void forEachFirst(ObjIntConsumer<Record.Timestamp> consumer) {
+            for (int slot = 0; slot < firsts.length; slot++)
+                if (firstEpochs[slot] == epoch)
+                    consumer.accept(firsts[slot], slot);
+        }
+
+        private Map<ProcessInfo, Double> toMap(IndexTable<ProcessInfo> processes) {
+            var map = new HashMap<ProcessInfo, Double>(count * 2);
+            forEach((slot, time) -> map.put(processes.get(slot), time));
+            return map;
+        }
     }
 
     private static class TmpData {
         private ProcessInfo process;
         private Record.Timestamp timestamp;
+        private long epoch;
 
-        private TmpData(ProcessInfo process, Record.Timestamp timestamp) {
+        private TmpData(ProcessInfo process, Record.Timestamp timestamp, long epoch) {
             this.process = process;
             this.timestamp = timestamp;
+            this.epoch = epoch;
         }
 
         private double update(Record.Timestamp timestamp, ProcessInfo previous, ProcessInfo next) {
@@ -192,9 +292,5 @@ public class SliceCollector implements RecordPeeper {
             this.timestamp = timestamp;
             return delta;
         }
-
-        private void reset(Record.Timestamp timestamp) {
-            this.timestamp = timestamp;
-        }
     }
 }
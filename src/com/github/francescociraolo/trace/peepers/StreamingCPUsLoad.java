@@ -0,0 +1,96 @@
+package com.github.francescociraolo.trace.peepers;
+
+import com.github.francescociraolo.datastructures.SlightlyMutableArray;
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.RecordSpecification;
+import com.github.francescociraolo.trace.peepers.CPUsLoad.CommonStatus;
+import com.github.francescociraolo.trace.reader.RecordPeeper;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+Load of the cores over the last seconds of a stream, as CPUsLoad over [now - window, now], now being the latest
+switch peeped: only the switches within the horizon are kept, the memory used does not grow with the stream. The
+load over the whole horizon takes constant time for each core, shorter windows a binary search
+ */
+public class StreamingCPUsLoad implements RecordPeeper {
+
+    private final SlightlyMutableArray<CoreLoad> coreData;
+    private final TaskClassifier classifier;
+    private final double horizon;
+    private long now = Long.MIN_VALUE;
+
+    public StreamingCPUsLoad(double horizon) {
+        this(horizon, true);
+    }
+
+    public StreamingCPUsLoad(double horizon, boolean simplified) {
+        this(horizon, simplified ? TaskClassifier.simplified() : TaskClassifier.detailed());
+    }
+
+    public StreamingCPUsLoad(double horizon, TaskClassifier classifier) {
+        if (!(horizon > 0))
+            throw new IllegalArgumentException("The horizon must be positive");
+        var cores = Runtime.getRuntime().availableProcessors();
+        this.coreData = new SlightlyMutableArray<>(cores, CoreLoad::new);
+        this.classifier = classifier;
+        this.horizon = horizon;
+    }
+
+    public void clear() {
+        coreData.forEach(CoreLoad::clear);
+        now = Long.MIN_VALUE;
+    }
+
+    public double getHorizon() {
+        return horizon;
+    }
+
+    /*
+    Load over the whole horizon
+     */
+    public List<Map<CommonStatus, Double>> getLoadData() {
+        return getLoadData(horizon);
+    }
+
+    /*
+    Load over the last window seconds, at most the horizon; empty maps before any switch
+     */
+    public List<Map<CommonStatus, Double>> getLoadData(double window) {
+        if (window > horizon)
+            throw new IllegalArgumentException(String.format("The window is longer than the horizon (%f s)", horizon));
+        if (now == Long.MIN_VALUE)
+            return coreData.stream().map(c -> Map.<CommonStatus, Double>of()).collect(Collectors.toList());
+
+        long start = now - CoreLoad.nanos(window), cutoff = now - CoreLoad.nanos(horizon);
+        return coreData
+                .stream()
+                .map(c -> {
+                    c.dropBefore(cutoff);
+                    return c.computeLoad(start, now);
+                })
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public EnumSet<RecordSpecification.Type> interests() {
+        return EnumSet.of(RecordSpecification.Type.SCHED_SWITCH);
+    }
+
+    @Override
+    public void peep(Record record) {
+        var specification = record.getSpecification();
+        if (specification.getType() == RecordSpecification.Type.SCHED_SWITCH) {
+            long time = record.getTimestamp().getNanos();
+            now = Math.max(now, time);
+
+            CoreLoad load = coreData.get(record.getCore());
+            var next = ((RecordSpecification.SchedSwitchSpec) specification).getNextProcess();
+            load.update(classifier.classify(next), time);
+            load.dropBefore(now - CoreLoad.nanos(horizon));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.francescociraolo.trace.peepers;
+
+import com.github.francescociraolo.trace.ProcessInfo;
+import com.github.francescociraolo.trace.peepers.CPUsLoad.CommonStatus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/*
+Tells what a core is doing while running a task: the first rule matching the task decides, the fallback applies
+when none does. Each distinct task is classified once, then taken from a cache, which can be shared by threads
+ */
+public class TaskClassifier {
+
+    @FunctionalInterface
+    public interface Rule {
+
+        /*
+        Null when the rule does not apply to the task
+         */
+        CommonStatus classify(ProcessInfo task);
+    }
+
+    private final List<Rule> rules;
+    private final CommonStatus fallback;
+    private final Map<ProcessInfo, CommonStatus> cache = new ConcurrentHashMap<>();
+
+    public TaskClassifier(CommonStatus fallback, Rule... rules) {
+        this.rules = List.of(rules);
+        this.fallback = fallback;
+    }
+
+    /*
+    Idle or working
+     */
+    public static TaskClassifier simplified() {
+        return new TaskClassifier(CommonStatus.WORKING, idle());
+    }
+
+    /*
+    Idle, kernel workers or user tasks
+     */
+    public static TaskClassifier detailed() {
+        return new TaskClassifier(CommonStatus.USER, idle(), kernelWorker());
+    }
+
+    public static Rule idle() {
+        return matching("swapper/\\d*", CommonStatus.IDLE);
+    }
+
+    public static Rule kernelWorker() {
+        return matching("kworker/(.+:)*\\d+", CommonStatus.KERNEL);
+    }
+
+    /*
+    Threaded interrupt handlers, counted as kernel
+     */
+    public static Rule irqThread() {
+        return matching("irq/\\d+-.*", CommonStatus.KERNEL);
+    }
+
+    /*
+    Tasks whose whole name matches the regular expression
+     */
+    public static Rule matching(String regex, CommonStatus status) {
+        var pattern = Pattern.compile(regex);
+        return task -> pattern.matcher(task.getName()).matches() ? status : null;
+    }
+
+    public CommonStatus classify(ProcessInfo task) {
+        var status = cache.get(task);
+        if (status == null) {
+            status = fallback;
+            for (Rule rule : rules) {
+                var ruled = rule.classify(task);
+                if (ruled != null) {
+                    status = ruled;
+                    break;
+                }
+            }
+            cache.put(task, status);
+        }
+        return status;
+    }
+}
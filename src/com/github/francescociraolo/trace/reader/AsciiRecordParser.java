@@ -0,0 +1,574 @@
+package com.github.francescociraolo.trace.reader;
+
+import com.github.francescociraolo.trace.ProcessInfo;
+import com.github.francescociraolo.trace.ProcessInfoPool;
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.RecordSpecification;
+import com.github.francescociraolo.trace.SimpleRecord;
+import com.github.francescociraolo.trace.StackTraceEntry;
+import com.github.francescociraolo.trace.TraceTokenAnalyzer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+Parses a block of trace-cmd report output (a record line followed by its stack lines, if any).
+Lines in the usual report shape are scanned in place, pulling every field out as offsets of the block; anything
+unusual is left to the original regular expressions, so that both ways always build the same records.
+A parser keeps the offsets of the last block scanned, hence it must not be shared among threads.
+Records out of the constraint are dropped once their header is scanned, before the message and the stack are parsed
+ */
+public class AsciiRecordParser implements TraceTokenAnalyzer {
+
+    private static final Pattern LINE_PATTERN = Pattern
+            .compile("(?<process>\\S+)-(?<pid>\\S+)\\s+\\[(?<core>\\d+)] +(?<timestamp>\\d+\\.\\d+):\\s+(?<type>\\S+):\\s+(?<msg>\\S.*)");
+    private static final Pattern STACK_ENTRY_PATTERN = Pattern
+            .compile("=> (\\S*)((?: \\((\\S*)\\))?)");
+
+    private static final RecordSpecification.Type[] TYPES = RecordSpecification.Type.values();
+    private static final byte[][] TYPE_STRINGS = new byte[TYPES.length][];
+
+    static {
+        for (int i = 0; i < TYPES.length; i++)
+            TYPE_STRINGS[i] = TYPES[i].getTypeString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static final byte[] ARROW = " ==> ".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] CANT_FIND_SUCCESS = "<CANT FIND FIELD success>".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] SUCCESS = " success=".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] CPU = " CPU:".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] COMM = "comm=".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] PID = " pid=".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] PRIO = " prio=".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] ORIG_CPU = " orig_cpu=".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] DEST_CPU = " dest_cpu=".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final ProcessInfoPool.Table processes;
+    private Constraint constraint = Constraint.NONE;
+    private boolean past;
+
+    private int processStart, processEnd;
+    private int pidStart, pidEnd;
+    private int coreStart, coreEnd;
+    private int timestampStart, timestampPoint, timestampEnd;
+    private int typeStart, typeEnd;
+    private int messageStart, messageEnd;
+
+    /*
+    Offsets of the last integer fields found by the message scanners
+     */
+    private int first, second, third, fourth;
+
+    public AsciiRecordParser() {
+        this(new ProcessInfoPool());
+    }
+
+    /*
+    Parsers reading the same trace from different threads should share the pool
+     */
+    public AsciiRecordParser(ProcessInfoPool processes) {
+        this.processes = processes.newTable();
+    }
+
+    public void setConstraint(Constraint constraint) {
+        this.constraint = constraint.isNone() ? Constraint.NONE : constraint;
+    }
+
+    /*
+    Whether the last block parsed comes after the time range of the constraint. Reports are ordered by timestamp, so
+    no later block is in the range either
+     */
+    public boolean isPast() {
+        return past;
+    }
+
+    /*
+    Parses the block found in [from, to), returns null if it does not contain a record or the record is out of the
+    constraint
+     */
+    public Record parse(byte[] block, int from, int to) {
+        Record record = null;
+        past = false;
+
+        if (scanLine(block, from, to)) {
+            if (!acceptsHeader(block))
+                return null;
+            record = build(block, from, to);
+        }
+
+        if (record == null) {
+            record = parse(string(block, from, to));
+            if (record != null && !constraint.accepts(record)) {
+                past = constraint.isPast(record.getTimestamp().getNanos());
+                record = null;
+            }
+        }
+
+        return record;
+    }
+
+    @Override
+    public Record analyze(String token) {
+        var bytes = token.getBytes(StandardCharsets.ISO_8859_1);
+        return parse(bytes, 0, bytes.length);
+    }
+
+    /*
+    The original regular expression based parser
+     */
+    public static Record parse(String block) {
+        Matcher recordMatcher = LINE_PATTERN.matcher(block);
+        if (!recordMatcher.find())
+            return null;
+
+        String processName = recordMatcher.group("process"),
+                timestamp = recordMatcher.group("timestamp");
+
+        int pid = Integer.parseInt(recordMatcher.group("pid")),
+                core = Integer.parseInt(recordMatcher.group("core"));
+        RecordSpecification recordSpec = RecordSpecification.parse(
+                recordMatcher.group("type"),
+                recordMatcher.group("msg"));
+
+        LinkedList<StackTraceEntry> stackTrace = new LinkedList<>();
+        if (recordSpec.getType().isStackTrace()) {
+            Matcher entryMatcher;
+            for (String line : block.split("\n")) {
+                entryMatcher = STACK_ENTRY_PATTERN.matcher(line);
+                if (entryMatcher.find()) {
+                    stackTrace.add("".equals(entryMatcher.group(2)) ?
+                            new StackTraceEntry(entryMatcher.group(1)) :
+                            new StackTraceEntry(entryMatcher.group(1), entryMatcher.group(3)));
+                }
+            }
+        }
+
+        return new SimpleRecord(new ProcessInfo(pid, processName), core, timestamp, recordSpec, stackTrace);
+    }
+
+    private Record build(byte[] block, int from, int to) {
+        int pid = parseInt(block, pidStart, pidEnd),
+                core = parseInt(block, coreStart, coreEnd);
+        RecordSpecification.Type type = findType(block, typeStart, typeEnd);
+        if (pid < 0 || core < 0 || type == null)
+            return null;
+
+        RecordSpecification specification = parseSpecification(type, block, messageStart, messageEnd);
+        if (specification == null)
+            return null;
+
+        LinkedList<StackTraceEntry> stackTrace = new LinkedList<>();
+        if (type.isStackTrace())
+            parseStackTrace(block, from, to, stackTrace);
+
+        return new SimpleRecord(processes.intern(pid, block, processStart, processEnd),
+                core,
+                timestamp(block),
+                specification,
+                stackTrace);
+    }
+
+    /*
+    Fields the scanner could not make sense of are left to build and the regular expressions
+     */
+    private boolean acceptsHeader(byte[] block) {
+        if (constraint == Constraint.NONE)
+            return true;
+
+        int pid = parseInt(block, pidStart, pidEnd),
+                core = parseInt(block, coreStart, coreEnd);
+        RecordSpecification.Type type = findType(block, typeStart, typeEnd);
+
+        if (constraint.isTimeBounded()) {
+            long nanos = timestamp(block).getNanos();
+            past = constraint.isPast(nanos);
+            if (!constraint.acceptsTime(nanos))
+                return false;
+        }
+
+        return (type == null || constraint.acceptsType(type))
+                && (core < 0 || constraint.acceptsCore(core))
+                && (pid < 0 || constraint.acceptsPid(pid));
+    }
+
+    /*
+    Nanoseconds straight from the digits, up to 9 of them on each side of the point
+     */
+    private Record.Timestamp timestamp(byte[] block) {
+        int digits = timestampEnd - timestampPoint - 1;
+        if (timestampPoint - timestampStart > 9 || digits > 9)
+            return new Record.Timestamp(string(block, timestampStart, timestampEnd));
+
+        long seconds = 0, fraction = 0;
+        for (int i = timestampStart; i < timestampPoint; i++)
+            seconds = seconds * 10 + block[i] - '0';
+        for (int i = timestampPoint + 1; i < timestampEnd; i++)
+            fraction = fraction * 10 + block[i] - '0';
+        for (int i = digits; i < 9; i++)
+            fraction *= 10;
+
+        return Record.Timestamp.ofNanos(seconds * 1_000_000_000L + fraction, digits);
+    }
+
+    /*
+    Looks for "<process>-<pid> [<core>] <seconds>.<fraction>: <type>: <message>" in the first line of the block
+     */
+    private boolean scanLine(byte[] block, int from, int to) {
+        int lineEnd = indexOf(block, from, to, (byte) '\n');
+
+        for (int bracket = from + 1; bracket < lineEnd; bracket++) {
+            if (block[bracket] != '[' || !isSpace(block[bracket - 1]))
+                continue;
+
+            int i = bracket + 1;
+            coreStart = i;
+            i = skipDigits(block, i, lineEnd);
+            if (i == coreStart || i >= lineEnd || block[i] != ']')
+                continue;
+            coreEnd = i++;
+
+            if (i >= lineEnd || block[i] != ' ')
+                continue;
+            while (i < lineEnd && block[i] == ' ') i++;
+
+            timestampStart = i;
+            i = skipDigits(block, i, lineEnd);
+            if (i == timestampStart || i >= lineEnd || block[i] != '.')
+                continue;
+            timestampPoint = i;
+            int fraction = ++i;
+            i = skipDigits(block, i, lineEnd);
+            if (i == fraction || i >= lineEnd || block[i] != ':')
+                continue;
+            timestampEnd = i++;
+
+            int tokenEnd = bracket - 1;
+            while (tokenEnd >= from && isSpace(block[tokenEnd])) tokenEnd--;
+            if (tokenEnd < from)
+                return false;
+            int tokenStart = tokenEnd;
+            while (tokenStart > from && !isSpace(block[tokenStart - 1])) tokenStart--;
+
+            int dash = tokenEnd - 1;
+            while (dash > tokenStart && block[dash] != '-') dash--;
+            if (dash <= tokenStart)
+                return false;
+            processStart = tokenStart;
+            processEnd = dash;
+            pidStart = dash + 1;
+            pidEnd = tokenEnd + 1;
+
+            if (i >= lineEnd || !isSpace(block[i]))
+                return false;
+            while (i < lineEnd && isSpace(block[i])) i++;
+
+            typeStart = i;
+            while (i < lineEnd && !isSpace(block[i])) i++;
+            if (i - typeStart < 2 || block[i - 1] != ':')
+                return false;
+            typeEnd = i - 1;
+
+            while (i < lineEnd && isSpace(block[i])) i++;
+            if (i >= lineEnd)
+                return false;
+
+            messageStart = messageEnd = i;
+            while (messageEnd < to && !isLineTerminator(block[messageEnd])) messageEnd++;
+            return true;
+        }
+
+        return false;
+    }
+
+    private RecordSpecification parseSpecification(RecordSpecification.Type type, byte[] block, int from, int to) {
+        switch (type) {
+            case SCHED_SWITCH:
+                return parseSchedSwitch(block, from, to);
+            case SCHED_WAKEUP:
+            case SCHED_WAKEUP_NEW:
+                return parseSchedWakeup(type, block, from, to);
+            case SCHED_MIGRATE_TASK:
+                return parseSchedMigrateTask(block, from, to);
+            case FUNCTION:
+                return new RecordSpecification.FunctionSpec(string(block, from, to));
+            case KERNEL_STACK:
+                return RecordSpecification.KernelStackSpec.INSTANCE;
+            default:
+                return type.parse(string(block, from, to));
+        }
+    }
+
+    /*
+    "<previous>:<pid> [<prio>] <state> ==> <next>:<pid> [<prio>]", names are greedy as in the regular expression
+     */
+    private RecordSpecification parseSchedSwitch(byte[] block, int from, int to) {
+        int arrow = lastIndexOf(block, from, to, ARROW);
+        if (arrow < 0)
+            return null;
+
+        int i = arrow - 1;
+        if (i < from || !isWord(block[i]))
+            return null;
+        char previousState = (char) (block[i--] & 0xFF);
+        if (i < from || block[i--] != ' ' || i < from || block[i] != ']')
+            return null;
+
+        int previousPriorityEnd = i--;
+        while (i >= from && isDigit(block[i])) i--;
+        int previousPriorityStart = i + 1;
+        if (i < from || block[i--] != '[' || i < from || block[i] != ' ')
+            return null;
+
+        int previousPidEnd = i--;
+        while (i >= from && isDigit(block[i])) i--;
+        int previousPidStart = i + 1;
+        if (i < from || block[i] != ':')
+            return null;
+        int previousNameEnd = i;
+
+        int nextNameStart = arrow + ARROW.length, nextNameEnd = -1;
+        for (int colon = lastIndexOf(block, nextNameStart, to, (byte) ':');
+             colon >= 0 && nextNameEnd < 0;
+             colon = lastIndexOf(block, nextNameStart, colon, (byte) ':'))
+            if (matchesPidAndPriority(block, colon, to))
+                nextNameEnd = colon;
+        if (nextNameEnd < 0)
+            return null;
+
+        int previousPid = parseInt(block, previousPidStart, previousPidEnd),
+                previousPriority = parseInt(block, previousPriorityStart, previousPriorityEnd),
+                nextPid = parseInt(block, first, second),
+                nextPriority = parseInt(block, third, fourth);
+        if (previousPid < 0 || previousPriority < 0 || nextPid < 0 || nextPriority < 0)
+            return null;
+
+        return new RecordSpecification.SchedSwitchSpec(
+                processes.intern(previousPid, block, from, previousNameEnd),
+                previousPriority,
+                previousState,
+                processes.intern(nextPid, block, nextNameStart, nextNameEnd),
+                nextPriority);
+    }
+
+    /*
+    ":<pid> [<prio>]" starting at the colon
+     */
+    private boolean matchesPidAndPriority(byte[] block, int colon, int to) {
+        int i = colon + 1;
+        first = i;
+        i = skipDigits(block, i, to);
+        second = i;
+        if (i + 1 >= to || block[i] != ' ' || block[i + 1] != '[')
+            return false;
+        third = i += 2;
+        i = skipDigits(block, i, to);
+        fourth = i;
+        return i < to && block[i] == ']';
+    }
+
+    /*
+    "<name>:<pid> [<prio>] success=<success> CPU:<cpu>", the success field may be missing
+     */
+    private RecordSpecification parseSchedWakeup(RecordSpecification.Type type, byte[] block, int from, int to) {
+        for (int colon = lastIndexOf(block, from, to, (byte) ':');
+             colon >= 0;
+             colon = lastIndexOf(block, from, colon, (byte) ':')) {
+            if (!matchesPidAndPriority(block, colon, to))
+                continue;
+
+            int pidStart = first, pidEnd = second, priorityStart = third, priorityEnd = fourth;
+            int i = priorityEnd + 1, successStart = -1, successEnd = -1;
+
+            if (startsWith(block, i, to, CANT_FIND_SUCCESS))
+                i += CANT_FIND_SUCCESS.length;
+            else if (startsWith(block, i, to, SUCCESS)) {
+                successStart = i += SUCCESS.length;
+                successEnd = i = skipDigits(block, i, to);
+            } else
+                continue;
+
+            if (!startsWith(block, i, to, CPU))
+                continue;
+            int cpuStart = i + CPU.length, cpuEnd = skipDigits(block, cpuStart, to);
+
+            int pid = parseInt(block, pidStart, pidEnd),
+                    priority = parseInt(block, priorityStart, priorityEnd),
+                    cpu = parseInt(block, cpuStart, cpuEnd);
+            if (pid < 0 || priority < 0 || cpu < 0)
+                return null;
+
+            Boolean success = null;
+            if (successStart >= 0)
+                success = successEnd - successStart == 1 && block[successStart] == '1';
+
+            return new RecordSpecification.SchedWakeupFamilySpec(type,
+                    processes.intern(pid, block, from, colon),
+                    priority,
+                    success,
+                    cpu);
+        }
+
+        return null;
+    }
+
+    /*
+    "comm=<name> pid=<pid> prio=<prio> orig_cpu=<cpu> dest_cpu=<cpu>"
+     */
+    private RecordSpecification parseSchedMigrateTask(byte[] block, int from, int to) {
+        if (!startsWith(block, from, to, COMM))
+            return null;
+
+        int nameStart = from + COMM.length;
+        for (int pidLabel = lastIndexOf(block, nameStart, to, PID);
+             pidLabel >= 0;
+             pidLabel = lastIndexOf(block, nameStart, pidLabel, PID)) {
+            int i = pidLabel + PID.length, pidStart = i;
+            int pidEnd = i = skipDigits(block, i, to);
+            if (!startsWith(block, i, to, PRIO))
+                continue;
+            int priorityStart = i += PRIO.length;
+            int priorityEnd = i = skipDigits(block, i, to);
+            if (!startsWith(block, i, to, ORIG_CPU))
+                continue;
+            int originStart = i += ORIG_CPU.length;
+            int originEnd = i = skipDigits(block, i, to);
+            if (!startsWith(block, i, to, DEST_CPU))
+                continue;
+            int destinationStart = i += DEST_CPU.length;
+            int destinationEnd = skipDigits(block, i, to);
+
+            int pid = parseInt(block, pidStart, pidEnd),
+                    priority = parseInt(block, priorityStart, priorityEnd),
+                    origin = parseInt(block, originStart, originEnd),
+                    destination = parseInt(block, destinationStart, destinationEnd);
+            if (pid < 0 || priority < 0 || origin < 0 || destination < 0)
+                return null;
+
+            return new RecordSpecification.SchedMigrateTaskSpec(
+                    processes.intern(pid, block, nameStart, pidLabel),
+                    priority,
+                    origin,
+                    destination);
+        }
+
+        return null;
+    }
+
+    /*
+    Every line containing "=> <function>[ (<address>)]" is an entry, the record line included
+     */
+    private static void parseStackTrace(byte[] block, int from, int to, LinkedList<StackTraceEntry> stackTrace) {
+        for (int lineStart = from; lineStart < to; ) {
+            int lineEnd = indexOf(block, lineStart, to, (byte) '\n');
+
+            int arrow = lineStart;
+            while (arrow + 2 < lineEnd && !(block[arrow] == '=' && block[arrow + 1] == '>' && block[arrow + 2] == ' '))
+                arrow++;
+
+            if (arrow + 2 < lineEnd) {
+                int nameStart = arrow + 3, nameEnd = nameStart;
+                while (nameEnd < lineEnd && !isSpace(block[nameEnd])) nameEnd++;
+
+                int addressEnd = -1, addressStart = nameEnd + 2;
+                if (addressStart < lineEnd && block[nameEnd] == ' ' && block[nameEnd + 1] == '(') {
+                    int runEnd = addressStart;
+                    while (runEnd < lineEnd && !isSpace(block[runEnd])) runEnd++;
+                    addressEnd = lastIndexOf(block, addressStart, runEnd, (byte) ')');
+                }
+
+                stackTrace.add(addressEnd < 0 ?
+                        new StackTraceEntry(string(block, nameStart, nameEnd)) :
+                        new StackTraceEntry(string(block, nameStart, nameEnd), string(block, addressStart, addressEnd)));
+            }
+
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private static RecordSpecification.Type findType(byte[] block, int from, int to) {
+        for (int t = 0; t < TYPES.length; t++)
+            if (startsWith(block, from, to, TYPE_STRINGS[t]) && to - from == TYPE_STRINGS[t].length)
+                return TYPES[t];
+        return null;
+    }
+
+    /*
+    Returns -1 for empty or too long digit sequences, letting the regular expressions deal with them
+     */
+    private static int parseInt(byte[] block, int from, int to) {
+        if (from >= to || to - from > 9)
+            return -1;
+
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            if (!isDigit(block[i]))
+                return -1;
+            value = value * 10 + block[i] - '0';
+        }
+        return value;
+    }
+
+    private static String string(byte[] block, int from, int to) {
+        return new String(block, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int skipDigits(byte[] block, int from, int to) {
+        while (from < to && isDigit(block[from])) from++;
+        return from;
+    }
+
+    private static int indexOf(byte[] block, int from, int to, byte value) {
+        while (from < to && block[from] != value) from++;
+        return from;
+    }
+
+    /*
+    Last occurrence starting in [from, to), -1 if none
+     */
+    private static int lastIndexOf(byte[] block, int from, int to, byte value) {
+        for (int i = to - 1; i >= from; i--)
+            if (block[i] == value)
+                return i;
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] block, int from, int to, byte[] value) {
+        for (int i = to - value.length; i >= from; i--)
+            if (startsWith(block, i, to, value))
+                return i;
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] block, int from, int to, byte[] value) {
+        if (to - from < value.length)
+            return false;
+        for (int i = 0; i < value.length; i++)
+            if (block[from + i] != value[i])
+                return false;
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWord(byte b) {
+        return isDigit(b) || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_';
+    }
+
+    /*
+    Same characters as \s
+     */
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    /*
+    Characters not matched by . in the regular expressions (\u0085 is a single byte in ISO-8859-1)
+     */
+    private static boolean isLineTerminator(byte b) {
+        return b == '\n' || b == '\r' || b == (byte) 0x85;
+    }
+}
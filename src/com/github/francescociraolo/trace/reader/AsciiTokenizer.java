@@ -0,0 +1,41 @@
+package com.github.francescociraolo.trace.reader;
+
+import com.github.francescociraolo.trace.TraceTokenizer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/*
+Splits trace-cmd report output in the same blocks read by AsciiTrace, the first token holds the "cpus=<n>" header
+ */
+public class AsciiTokenizer implements TraceTokenizer {
+
+    private final BlockReader blocks;
+
+    public AsciiTokenizer(InputStream inputStream) {
+        this.blocks = new BlockReader(inputStream);
+    }
+
+    @Override
+    public void close() throws IOException {
+        blocks.close();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return blocks.hasNext();
+    }
+
+    @Override
+    public synchronized String next() throws IOException {
+        if (!hasNext()) throw new EOFException();
+
+        blocks.readBlock();
+        return new String(blocks.getBuffer(),
+                blocks.getBlockStart(),
+                blocks.getBlockEnd() - blocks.getBlockStart(),
+                StandardCharsets.ISO_8859_1);
+    }
+}
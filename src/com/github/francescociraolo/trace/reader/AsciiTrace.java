@@ -1,82 +1,59 @@
 package com.github.francescociraolo.trace.reader;
 
-import com.github.francescociraolo.trace.RecordSpecification;
-import com.github.francescociraolo.trace.StackTraceEntry;
-import com.github.francescociraolo.trace.ProcessInfo;
 import com.github.francescociraolo.trace.Record;
-import com.github.francescociraolo.trace.SimpleRecord;
 
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+Reads the text produced by trace-cmd report, either from a stream, one block at a time, or from a file, whose
+ranges are parsed in parallel. With a time bounded constraint, reading stops at the first block past it; a wider
+constraint pushed later goes on from that block. Out of a file, records dropped by a narrower constraint are not read
+again
+ */
 public class AsciiTrace extends Trace implements Closeable {
 
-    private static final Pattern LINE_PATTERN = Pattern
-            .compile("(?<process>\\S+)-(?<pid>\\S+)\\s+\\[(?<core>\\d+)] +(?<timestamp>\\d+\\.\\d+):\\s+(?<type>\\S+):\\s+(?<msg>\\S.*)");
-    private static final Pattern STACK_ENTRY_PATTERN = Pattern
-            .compile("=> (\\S*)((?: \\((\\S*)\\))?)");
-
-    private final InputStream inputStream;
-    private final StringBuilder blockBuilder;
+    private final BlockReader blocks;
+    private final ReportChunks chunks;
+    private final AsciiRecordParser parser;
     private final int cpus;
-    private int nextChar;
+    private boolean past;
+    /* found in the block past the previous constraint */
+    private Record pending;
 
     public AsciiTrace(InputStream inputStream) throws IOException {
-        this.inputStream = inputStream;
-        this.blockBuilder = new StringBuilder();
-
-        nextChar = inputStream.read();
-        for (char c : "cpus=".toCharArray()) {
-            if (nextChar != c)
-                throw new RuntimeException("Wrong report format!");
-            nextChar = inputStream.read();
-        }
+        this.blocks = new BlockReader(inputStream);
+        this.chunks = null;
+        this.parser = new AsciiRecordParser();
+        this.cpus = blocks.readCpus();
+    }
 
-        int cpus = 0;
-        while (nextChar != '\n') {
-            cpus *= 10;
-            cpus += nextChar - '0';
-            nextChar = inputStream.read();
-        }
+    public AsciiTrace(Path reportPath) throws IOException {
+        this(reportPath, ForkJoinPool.commonPool());
+    }
 
-        this.cpus = cpus;
+    public AsciiTrace(Path reportPath, ForkJoinPool pool) throws IOException {
+        this.blocks = null;
+        this.chunks = new ReportChunks(reportPath, pool);
+        this.parser = null;
+        this.cpus = chunks.getCpus();
     }
 
     @Override
     public void close() throws IOException {
-        inputStream.close();
+        if (chunks != null)
+            chunks.close();
+        else
+            blocks.close();
     }
 
     @Override
     public boolean hasNext() {
-        return nextChar != -1;
-    }
-
-    private void readBlock() throws IOException {
-        blockBuilder.setLength(0);
-        boolean end = false;
-
-        while (!end) {
-            switch (nextChar) {
-                case '\n':
-                    nextChar = inputStream.read();
-                    end = nextChar == ' ';
-                    if (!end) blockBuilder.append('\n');
-                    break;
-                case -1:
-                    end = true;
-                    break;
-                default:
-                    blockBuilder.append((char) nextChar);
-                    nextChar = inputStream.read();
-                    break;
-            }
-        }
+        return chunks != null ? chunks.hasNext() : !past && (pending != null || blocks.hasNext());
     }
 
     @Override
@@ -84,40 +61,35 @@ public class AsciiTrace extends Trace implements Closeable {
         return cpus;
     }
 
+    @Override
+    public synchronized void pushDown(Constraint constraint) throws IOException {
+        if (chunks != null) {
+            chunks.setConstraint(constraint);
+            return;
+        }
+
+        parser.setConstraint(constraint);
+        if (past) {
+            pending = parser.parse(blocks.getBuffer(), blocks.getBlockStart(), blocks.getBlockEnd());
+            past = parser.isPast();
+        }
+    }
+
     @Override
     public synchronized Record next() throws IOException {
         if (!hasNext()) throw new EOFException();
 
-        readBlock();
-
-        Matcher recordMatcher = LINE_PATTERN.matcher(blockBuilder.toString());
-        while (!recordMatcher.find()) {
-            readBlock();
-            recordMatcher = LINE_PATTERN.matcher(blockBuilder.toString());
-        }
+        if (chunks != null)
+            return chunks.next();
 
-        String processName = recordMatcher.group("process"),
-                timestamp = recordMatcher.group("timestamp");
-
-        int pid = Integer.parseInt(recordMatcher.group("pid")),
-                core = Integer.parseInt(recordMatcher.group("core"));
-        RecordSpecification recordSpec = RecordSpecification.parse(
-                recordMatcher.group("type"),
-                recordMatcher.group("msg"));
-
-        LinkedList<StackTraceEntry> stackTrace = new LinkedList<>();
-        if (recordSpec.getType().isStackTrace()) {
-            Matcher entryMatcher;
-            for (String line : blockBuilder.toString().split("\n")) {
-                entryMatcher = STACK_ENTRY_PATTERN.matcher(line);
-                if (entryMatcher.find()) {
-                    stackTrace.add("".equals(entryMatcher.group(2)) ?
-                            new StackTraceEntry(entryMatcher.group(1)) :
-                            new StackTraceEntry(entryMatcher.group(1), entryMatcher.group(3)));
-                }
-            }
+        Record record = pending;
+        pending = null;
+        while (record == null && hasNext()) {
+            blocks.readBlock();
+            record = parser.parse(blocks.getBuffer(), blocks.getBlockStart(), blocks.getBlockEnd());
+            past = parser.isPast();
         }
 
-        return new SimpleRecord(new ProcessInfo(pid, processName), core, timestamp, recordSpec, stackTrace);
+        return record;
     }
 }
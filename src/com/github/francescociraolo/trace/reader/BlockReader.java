@@ -0,0 +1,134 @@
+package com.github.francescociraolo.trace.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/*
+Reads the text produced by trace-cmd report in large chunks, blocks are cut directly from the buffer at every
+"\n " boundary (record lines are padded with leading spaces, stack trace lines are not)
+ */
+class BlockReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream inputStream;
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    private int blockStart;
+    private int blockEnd;
+
+    BlockReader(InputStream inputStream) {
+        this.inputStream = inputStream;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /*
+    Reads the "cpus=<n>" header, the newline is left in the buffer acting as the boundary before the first record
+     */
+    int readCpus() throws IOException {
+        for (char c : "cpus=".toCharArray()) {
+            if (!ensureAvailable() || buffer[position] != c)
+                throw new RuntimeException("Wrong report format!");
+            position++;
+        }
+
+        int cpus = 0;
+        while (ensureAvailable() && buffer[position] != '\n') {
+            cpus *= 10;
+            cpus += buffer[position++] - '0';
+        }
+        if (position == limit)
+            throw new RuntimeException("Wrong report format!");
+
+        return cpus;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    boolean hasNext() {
+        return position < limit || !eof;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    int getBlockStart() {
+        return blockStart;
+    }
+
+    int getBlockEnd() {
+        return blockEnd;
+    }
+
+    /*
+    Makes sure that at least one byte follows the current position, unless the stream is over
+     */
+    private boolean ensureAvailable() throws IOException {
+        while (position == limit && !eof)
+            fill();
+        return position < limit;
+    }
+
+    /*
+    Moves the unread bytes at the beginning of the buffer (growing it when they already fill it) and reads more
+     */
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        } else if (limit == buffer.length)
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+        int read = inputStream.read(buffer, limit, buffer.length - limit);
+        if (read < 0)
+            eof = true;
+        else
+            limit += read;
+    }
+
+    /*
+    The block goes from the current position to the first newline followed by a space, which is dropped, or to the
+    end of the stream. Either way the position is left on an available byte unless the stream is over.
+    The block stays valid in the buffer until the next call
+     */
+    void readBlock() throws IOException {
+        int scan = position;
+
+        while (true) {
+            int newline = scan;
+            while (newline < limit && buffer[newline] != '\n') newline++;
+
+            if (newline + 1 < limit) {
+                if (buffer[newline + 1] == ' ') {
+                    blockStart = position;
+                    blockEnd = newline;
+                    position = newline + 1;
+                    break;
+                }
+                scan = newline + 1;
+                continue;
+            }
+
+            if (eof) {
+                blockStart = position;
+                blockEnd = position = limit;
+                break;
+            }
+
+            int shift = position;
+            fill();
+            scan = newline - shift;
+        }
+    }
+}
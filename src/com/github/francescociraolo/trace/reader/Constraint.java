@@ -0,0 +1,220 @@
+package com.github.francescociraolo.trace.reader;
+
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.RecordSpecification;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumSet;
+
+/*
+Bounds on the header fields of the records a filter may accept (type, core, pid and timestamp), which readers can
+check before parsing the rest of a record. A null set stands for any value. Combining constraints keeps them
+conservative: a union is the smallest box holding both, so a record out of a constraint is never accepted by the
+filter it comes from, while records in it still have to be tested
+ */
+public class Constraint {
+
+    public static final Constraint NONE = new Constraint(null, null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final EnumSet<RecordSpecification.Type> types;
+    private final BitSet cores;
+    /* sorted */
+    private final int[] pids;
+    /* nanoseconds, both included */
+    private final long from;
+    private final long to;
+
+    private Constraint(EnumSet<RecordSpecification.Type> types, BitSet cores, int[] pids, long from, long to) {
+        this.types = types;
+        this.cores = cores;
+        this.pids = pids;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static Constraint ofTypes(Collection<RecordSpecification.Type> types) {
+        return new Constraint(types.isEmpty() ? EnumSet.noneOf(RecordSpecification.Type.class) : EnumSet.copyOf(types),
+                null, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public static Constraint ofCores(Collection<Integer> cores) {
+        var set = new BitSet();
+        cores.forEach(set::set);
+        return new Constraint(null, set, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public static Constraint ofPids(Collection<Integer> pids) {
+        var array = pids.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        return new Constraint(null, null, array, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /*
+    Timestamps in nanoseconds, both bounds included
+     */
+    public static Constraint ofTime(long from, long to) {
+        return new Constraint(null, null, null, from, to);
+    }
+
+    public Constraint intersect(Constraint other) {
+        if (this == NONE)
+            return other;
+        if (other == NONE)
+            return this;
+
+        EnumSet<RecordSpecification.Type> types = null;
+        if (this.types == null || other.types == null)
+            types = this.types == null ? other.types : this.types;
+        else {
+            types = EnumSet.copyOf(this.types);
+            types.retainAll(other.types);
+        }
+
+        BitSet cores = null;
+        if (this.cores == null || other.cores == null)
+            cores = this.cores == null ? other.cores : this.cores;
+        else {
+            cores = (BitSet) this.cores.clone();
+            cores.and(other.cores);
+        }
+
+        int[] pids;
+        if (this.pids == null || other.pids == null)
+            pids = this.pids == null ? other.pids : this.pids;
+        else
+            pids = Arrays.stream(this.pids).filter(pid -> Arrays.binarySearch(other.pids, pid) >= 0).toArray();
+
+        return new Constraint(types, cores, pids, Math.max(from, other.from), Math.min(to, other.to));
+    }
+
+    public Constraint union(Constraint other) {
+        if (this == NONE || other == NONE)
+            return NONE;
+
+        EnumSet<RecordSpecification.Type> types = null;
+        if (this.types != null && other.types != null) {
+            types = EnumSet.copyOf(this.types);
+            types.addAll(other.types);
+        }
+
+        BitSet cores = null;
+        if (this.cores != null && other.cores != null) {
+            cores = (BitSet) this.cores.clone();
+            cores.or(other.cores);
+        }
+
+        int[] pids = null;
+        if (this.pids != null && other.pids != null) {
+            pids = Arrays.copyOf(this.pids, this.pids.length + other.pids.length);
+            System.arraycopy(other.pids, 0, pids, this.pids.length, other.pids.length);
+            pids = Arrays.stream(pids).sorted().distinct().toArray();
+        }
+
+        return new Constraint(types, cores, pids, Math.min(from, other.from), Math.max(to, other.to));
+    }
+
+    /*
+    The time range and the cores of this constraint only, any type and pid
+     */
+    public Constraint timeAndCores() {
+        if (types == null && pids == null)
+            return this;
+        return new Constraint(null, cores, null, from, to);
+    }
+
+    /*
+    Whether every record accepted by the other constraint is accepted by this one too
+     */
+    public boolean contains(Constraint other) {
+        if (this == NONE || other.isEmpty())
+            return true;
+        if (types != null && (other.types == null || !types.containsAll(other.types)))
+            return false;
+        if (cores != null) {
+            if (other.cores == null)
+                return false;
+            var outside = (BitSet) other.cores.clone();
+            outside.andNot(cores);
+            if (!outside.isEmpty())
+                return false;
+        }
+        if (pids != null && (other.pids == null
+                || Arrays.stream(other.pids).anyMatch(pid -> Arrays.binarySearch(pids, pid) < 0)))
+            return false;
+        return from <= other.from && to >= other.to;
+    }
+
+    public boolean isNone() {
+        return types == null && cores == null && pids == null && from == Long.MIN_VALUE && to == Long.MAX_VALUE;
+    }
+
+    public boolean isTimeBounded() {
+        return from != Long.MIN_VALUE || to != Long.MAX_VALUE;
+    }
+
+    public boolean acceptsType(RecordSpecification.Type type) {
+        return types == null || types.contains(type);
+    }
+
+    public boolean acceptsCore(int core) {
+        return cores == null || (core >= 0 && cores.get(core));
+    }
+
+    public boolean acceptsPid(int pid) {
+        return pids == null || Arrays.binarySearch(pids, pid) >= 0;
+    }
+
+    public boolean acceptsTime(long nanos) {
+        return nanos >= from && nanos <= to;
+    }
+
+    /*
+    Whether the timestamp is beyond the time range: in a trace ordered by timestamp no record after it is accepted
+     */
+    public boolean isPast(long nanos) {
+        return nanos > to;
+    }
+
+    public boolean accepts(RecordSpecification.Type type, int core, int pid, long nanos) {
+        return acceptsType(type) && acceptsCore(core) && acceptsPid(pid) && acceptsTime(nanos);
+    }
+
+    public boolean accepts(Record record) {
+        return accepts(record.getSpecification().getType(),
+                record.getCore(),
+                record.getProcessPid(),
+                record.getTimestamp().getNanos());
+    }
+
+    /*
+    Whether any record at all can be accepted
+     */
+    public boolean isEmpty() {
+        return (types != null && types.isEmpty())
+                || (cores != null && cores.isEmpty())
+                || (pids != null && pids.length == 0)
+                || from > to;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    /*
+    The cores accepted, null for any
+     */
+    public BitSet getCores() {
+        return cores == null ? null : (BitSet) cores.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Constraint{types=%s, cores=%s, pids=%s, from=%d, to=%d}",
+                types, cores, pids == null ? null : Arrays.toString(pids), from, to);
+    }
+}
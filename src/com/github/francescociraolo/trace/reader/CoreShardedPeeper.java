@@ -0,0 +1,18 @@
+package com.github.francescociraolo.trace.reader;
+
+/*
+A peeper whose state is kept by core, the state of a core changed only by the records of that core: the records of
+every core can be peeped apart, each by a shard of the peeper, and then merged back
+ */
+public interface CoreShardedPeeper<P extends CoreShardedPeeper<P>> extends RecordPeeper {
+
+    /*
+    An empty peeper configured as this one
+     */
+    P newShard();
+
+    /*
+    Takes the state of the core from the shard, which has only peeped the records of that core
+     */
+    void merge(int core, P shard);
+}
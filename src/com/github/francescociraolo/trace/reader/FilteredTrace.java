@@ -1,6 +1,7 @@
 package com.github.francescociraolo.trace.reader;
 
 import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.filter.RecordFilter;
 
 import java.io.IOException;
 import java.util.function.Predicate;
@@ -10,12 +11,19 @@ public class FilteredTrace extends Trace {
     private final Trace trace;
     private Predicate<Record> filter;
     private Record temp;
+    /* of the filter */
+    private Constraint constraint = Constraint.NONE;
 
     public FilteredTrace(Trace trace, Predicate<Record> filter) throws IOException {
         this.trace = trace;
         this.filter = filter;
 
         nextTemp();
+
+        if (filter instanceof RecordFilter) {
+            constraint = ((RecordFilter) filter).constraint();
+            trace.pushDown(constraint);
+        }
     }
 
     private void nextTemp() throws IOException {
@@ -35,6 +43,30 @@ public class FilteredTrace extends Trace {
         return trace.getCpusCount();
     }
 
+    @Override
+    public boolean isSeekable() {
+        return trace.isSeekable();
+    }
+
+    @Override
+    public void seek(Record.Timestamp timestamp) throws IOException {
+        trace.seek(timestamp);
+    }
+
+    @Override
+    public void seek(int core, Record.Timestamp timestamp) throws IOException {
+        trace.seek(core, timestamp);
+    }
+
+    /*
+    Only the records accepted by the filter get here, so the constraint of the filter still holds. Constraints pushed
+    earlier do not, a wider one replaces them
+     */
+    @Override
+    public void pushDown(Constraint constraint) throws IOException {
+        trace.pushDown(this.constraint.intersect(constraint));
+    }
+
     @Override
     public Record next() throws IOException {
         Record record = null;
@@ -45,4 +77,9 @@ public class FilteredTrace extends Trace {
         }
         return record;
     }
+
+    @Override
+    public void close() throws IOException {
+        trace.close();
+    }
 }
@@ -4,6 +4,7 @@ import com.github.francescociraolo.trace.ProcessInfo;
 import com.github.francescociraolo.trace.Record;
 import com.github.francescociraolo.trace.RecordSpecification;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,6 +18,11 @@ public class FirstLastPeeper implements RecordPeeper {
         last = new HashMap();
     }
 
+    @Override
+    public EnumSet<RecordSpecification.Type> interests() {
+        return EnumSet.of(RecordSpecification.Type.SCHED_SWITCH);
+    }
+
     @Override
     public void peep(Record record) {
         RecordSpecification specification = record.getSpecification();
@@ -0,0 +1,206 @@
+package com.github.francescociraolo.trace.reader;
+
+import com.github.francescociraolo.datastructures.SpscRing;
+import com.github.francescociraolo.trace.Record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+Shows the records of a trace to groups of peepers, each group on a thread of its own: the records returned are
+collected in batches and every batch goes to every group through a ring of the group, the reader waits while a ring
+is full. Peepers lag behind the records returned, so they can only be looked at once joined: at the end of the
+trace, when hasNext() turns false, or by join()
+ */
+public class ParallelPeepTrace extends Trace implements Closeable {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUED_BATCHES = 16;
+    /* no record after it */
+    private static final Record[] END = new Record[0];
+
+    private final Trace trace;
+    private final Worker[] workers;
+    private final int batchSize;
+
+    private Record[] batch;
+    private int size;
+    private boolean joined;
+
+    /*
+    Every peeper on its own thread
+     */
+    public ParallelPeepTrace(Trace trace, RecordPeeper... peepers) throws IOException {
+        this(trace, BATCH_SIZE, peepers.length);
+        for (int i = 0; i < peepers.length; i++)
+            start(i, List.of(peepers[i]));
+        if (!trace.hasNext())
+            join();
+    }
+
+    /*
+    Each group on its own thread, the peepers of a group see the records as in a PeepTrace
+     */
+    @SafeVarargs
+    public ParallelPeepTrace(Trace trace, int batchSize, List<? extends RecordPeeper>... groups) throws IOException {
+        this(trace, batchSize, groups.length);
+        for (int i = 0; i < groups.length; i++)
+            start(i, groups[i]);
+        if (!trace.hasNext())
+            join();
+    }
+
+    private ParallelPeepTrace(Trace trace, int batchSize, int groups) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("The batch size must be positive");
+        this.trace = trace;
+        this.batchSize = batchSize;
+        this.batch = new Record[batchSize];
+        this.workers = new Worker[groups];
+    }
+
+    private void start(int index, List<? extends RecordPeeper> group) {
+        workers[index] = new Worker(new PeeperGroup(group.toArray(RecordPeeper[]::new)), index);
+        workers[index].start();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return trace.hasNext();
+    }
+
+    @Override
+    public Record next() throws IOException {
+        Record record = trace.next();
+        if (record != null && !joined) {
+            batch[size++] = record;
+            if (size == batchSize)
+                publish();
+        }
+        if (!trace.hasNext())
+            join();
+        return record;
+    }
+
+    private void publish() throws IOException {
+        if (size == 0)
+            return;
+        var records = size == batch.length ? batch : Arrays.copyOf(batch, size);
+        batch = new Record[batchSize];
+        size = 0;
+        send(records);
+    }
+
+    private void send(Record[] records) throws IOException {
+        put(records);
+        checkFailures();
+    }
+
+    /*
+    Every worker gets the records, failed ones too: they keep draining their ring, so that none is left waiting
+     */
+    private void put(Record[] records) throws IOException {
+        try {
+            for (Worker worker : workers)
+                worker.ring.put(records);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    private void checkFailures() throws IOException {
+        for (Worker worker : workers)
+            if (worker.failure != null)
+                throw new IOException("Unable to peep the trace", worker.failure);
+    }
+
+    /*
+    Waits for the peepers to see every record returned so far, the ones returned later are not peeped. A failure of
+    a peeper is thrown here
+     */
+    public void join() throws IOException {
+        if (joined)
+            return;
+        joined = true;
+
+        try {
+            publish();
+        } finally {
+            put(END);
+            try {
+                for (Worker worker : workers)
+                    worker.join();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+        checkFailures();
+    }
+
+    @Override
+    public int getCpusCount() {
+        return trace.getCpusCount();
+    }
+
+    @Override
+    public boolean isSeekable() {
+        return trace.isSeekable();
+    }
+
+    @Override
+    public void seek(Record.Timestamp timestamp) throws IOException {
+        publish();
+        trace.seek(timestamp);
+    }
+
+    @Override
+    public void seek(int core, Record.Timestamp timestamp) throws IOException {
+        publish();
+        trace.seek(core, timestamp);
+    }
+
+    /*
+    Stops the peepers where they are
+     */
+    @Override
+    public void close() throws IOException {
+        joined = true;
+        for (Worker worker : workers)
+            worker.interrupt();
+        trace.close();
+    }
+
+    /*
+    After a failure of its peepers, it keeps draining its ring so that the reader is never blocked
+     */
+    private static class Worker extends Thread {
+
+        private final PeeperGroup peepers;
+        private final SpscRing<Record[]> ring = new SpscRing<>(QUEUED_BATCHES);
+        private volatile Throwable failure;
+
+        private Worker(PeeperGroup peepers, int index) {
+            super(String.format("trace peeper %d", index));
+            this.peepers = peepers;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                Record[] records;
+                while ((records = ring.take()) != END)
+                    if (failure == null)
+                        try {
+                            peepers.peep(records, records.length);
+                        } catch (Throwable throwable) {
+                            failure = throwable;
+                        }
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+}
@@ -2,35 +2,143 @@ package com.github.francescociraolo.trace.reader;
 
 import com.github.francescociraolo.trace.Record;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.util.Set;
 
+/*
+Shows the records of a trace to its peepers, in the order they are given and only the types they are interested in.
+Records are read in batches and every peeper gets the whole batch before the next one: with batches larger than one
+record, peepers are ahead of the records returned, so they suit traces whose peepers are only looked at once the
+trace is read
+ */
 public class PeepTrace extends Trace {
 
+    /* batch size of parseAll(), no record is returned there */
+    private static final int PARSE_ALL_BATCH_SIZE = 1024;
+
     private final Trace trace;
-    private final Set<RecordPeeper> recordPeepers;
+    private final PeeperGroup peepers;
+    private final int batchSize;
+
+    /* records as read, nulls included, and the ones peeped */
+    private Record[] records;
+    private Record[] peeped;
+    private int size, index;
+    private IOException failure;
 
     public PeepTrace(Trace trace, RecordPeeper... peepers) {
+        this(trace, 1, peepers);
+    }
+
+    public PeepTrace(Trace trace, int batchSize, RecordPeeper... peepers) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("The batch size must be positive");
         this.trace = trace;
-        this.recordPeepers = Set.of(peepers);
+        this.peepers = new PeeperGroup(peepers);
+        this.batchSize = batchSize;
+        this.records = new Record[batchSize];
+        this.peeped = new Record[batchSize];
+    }
+
+    /*
+    A failure after some records are read is thrown once they are returned
+     */
+    private void fill(int capacity) throws IOException {
+        if (records.length < capacity) {
+            records = new Record[capacity];
+            peeped = new Record[capacity];
+        }
+
+        int n = 0;
+        size = index = 0;
+        try {
+            while (size < capacity && trace.hasNext()) {
+                Record record = trace.next();
+                records[size++] = record;
+                if (record != null)
+                    peeped[n++] = record;
+            }
+        } catch (IOException e) {
+            if (size == 0)
+                throw e;
+            failure = e;
+        }
+
+        if (n > 0)
+            peepers.peep(peeped, n);
     }
 
     @Override
     public boolean hasNext() {
-        return trace.hasNext();
+        return index < size || failure != null || trace.hasNext();
     }
 
     @Override
     public Record next() throws IOException {
-        Record next = trace.next();
-        if (next != null)
-            for (RecordPeeper recordPeeper : recordPeepers)
-                recordPeeper.peep(next);
-        return next;
+        if (!hasNext()) throw new EOFException();
+
+        if (index == size) {
+            if (failure != null) {
+                var failure = this.failure;
+                this.failure = null;
+                throw failure;
+            }
+            fill(batchSize);
+        }
+        return records[index++];
+    }
+
+    /*
+    Records are only peeped, so the batches can be as large as wanted
+     */
+    @Override
+    public void parseAll() throws IOException {
+        index = size;
+        while (hasNext()) {
+            if (failure != null)
+                next();
+            fill(Math.max(batchSize, PARSE_ALL_BATCH_SIZE));
+            index = size;
+        }
     }
 
     @Override
     public int getCpusCount() {
         return trace.getCpusCount();
     }
+
+    @Override
+    public boolean isSeekable() {
+        return trace.isSeekable();
+    }
+
+    /*
+    Records read ahead are dropped, peepers have already seen them
+     */
+    @Override
+    public void seek(Record.Timestamp timestamp) throws IOException {
+        size = index = 0;
+        failure = null;
+        trace.seek(timestamp);
+    }
+
+    @Override
+    public void seek(int core, Record.Timestamp timestamp) throws IOException {
+        size = index = 0;
+        failure = null;
+        trace.seek(core, timestamp);
+    }
+
+    /*
+    Peepers only see the records the reader keeps. Records read ahead are still returned
+     */
+    @Override
+    public void pushDown(Constraint constraint) throws IOException {
+        trace.pushDown(constraint);
+    }
+
+    @Override
+    public void close() throws IOException {
+        trace.close();
+    }
 }
@@ -0,0 +1,85 @@
+package com.github.francescociraolo.trace.reader;
+
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.RecordSpecification;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/*
+Peepers shown the same records, in the order they are given, each one only the types it is interested in: single
+records go through a table of the peepers by type, batches are narrowed for each peeper (once for consecutive
+peepers with the same interests)
+ */
+class PeeperGroup {
+
+    private static final int TYPES = RecordSpecification.Type.values().length;
+
+    private final RecordPeeper[] peepers;
+    /* by peeper, the types it is interested in, null for all of them */
+    private final boolean[][] interests;
+    /* by type ordinal, the peepers interested in it */
+    private final RecordPeeper[][] peepersByType;
+
+    /* the records of a batch of interest for a peeper */
+    private Record[] selected = new Record[0];
+
+    PeeperGroup(RecordPeeper... peepers) {
+        this.peepers = peepers.clone();
+        this.interests = new boolean[peepers.length][];
+
+        var byType = new RecordPeeper[TYPES][peepers.length];
+        var counts = new int[TYPES];
+        for (int i = 0; i < peepers.length; i++) {
+            EnumSet<RecordSpecification.Type> types = peepers[i].interests();
+            if (types.size() < TYPES)
+                interests[i] = new boolean[TYPES];
+            for (RecordSpecification.Type type : types) {
+                byType[type.ordinal()][counts[type.ordinal()]++] = peepers[i];
+                if (interests[i] != null)
+                    interests[i][type.ordinal()] = true;
+            }
+        }
+        this.peepersByType = new RecordPeeper[TYPES][];
+        for (int type = 0; type < TYPES; type++)
+            peepersByType[type] = Arrays.copyOf(byType[type], counts[type]);
+    }
+
+    void peep(Record record) {
+        for (RecordPeeper peeper : peepersByType[record.getType().ordinal()])
+            peeper.peep(record);
+    }
+
+    /*
+    The first n records of the batch, none of them null
+     */
+    void peep(Record[] batch, int n) {
+        if (n == 1) {
+            peep(batch[0]);
+            return;
+        }
+        if (selected.length < n)
+            selected = new Record[n];
+
+        boolean[] last = null;
+        int m = 0;
+
+        for (int i = 0; i < peepers.length; i++) {
+            boolean[] types = interests[i];
+            if (types == null) {
+                peepers[i].peepBatch(batch, n);
+                continue;
+            }
+
+            if (types != last && !Arrays.equals(types, last)) {
+                m = 0;
+                for (int j = 0; j < n; j++)
+                    if (types[batch[j].getType().ordinal()])
+                        selected[m++] = batch[j];
+                last = types;
+            }
+            if (m > 0)
+                peepers[i].peepBatch(selected, m);
+        }
+    }
+}
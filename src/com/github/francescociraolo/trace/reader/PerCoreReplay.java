@@ -0,0 +1,123 @@
+package com.github.francescociraolo.trace.reader;
+
+import com.github.francescociraolo.trace.Record;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Reads a trace one core at a time, the cores in parallel, each with its own shards of the peepers, which are merged
+into them once every core is read. Each core opens its own trace narrowed to the core by a constraint, as
+Trace.fromDatFile(Path, Constraint) does: trace.dat only decodes the buffer of the core, stores skip the other cores
+on their columns
+ */
+public class PerCoreReplay {
+
+    private static final int BATCH_SIZE = 1024;
+
+    @FunctionalInterface
+    public interface TraceSource {
+
+        /*
+        The trace, which may read only the records accepted by the constraint
+         */
+        Trace open(Constraint constraint) throws IOException;
+    }
+
+    private final TraceSource source;
+    private final CoreShardedPeeper<?>[] peepers;
+    private final int threads;
+
+    public PerCoreReplay(TraceSource source, CoreShardedPeeper<?>... peepers) {
+        this(source, Runtime.getRuntime().availableProcessors(), peepers);
+    }
+
+    public PerCoreReplay(TraceSource source, int threads, CoreShardedPeeper<?>... peepers) {
+        this.source = source;
+        this.threads = threads;
+        this.peepers = peepers.clone();
+    }
+
+    /*
+    Reads every core of the trace, then merges the shards into the peepers in core order
+     */
+    public void run() throws IOException {
+        var first = source.open(ofCore(0));
+        int cpus = first.getCpusCount();
+
+        var threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, cpus)), runnable -> {
+            var thread = new Thread(runnable, String.format("core replay %d", threadCount.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            var shards = new ArrayList<Future<RecordPeeper[]>>(cpus);
+            for (int core = 0; core < cpus; core++) {
+                int replayed = core;
+                shards.add(executor.submit(() -> replay(replayed == 0 ? first : source.open(ofCore(replayed)), replayed)));
+            }
+
+            for (int core = 0; core < cpus; core++) {
+                RecordPeeper[] coreShards;
+                try {
+                    coreShards = shards.get(core).get();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException(e.getMessage());
+                } catch (ExecutionException e) {
+                    throw new IOException(String.format("Unable to read core %d", core), e.getCause());
+                }
+                for (int i = 0; i < peepers.length; i++)
+                    merge(peepers[i], core, coreShards[i]);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RecordPeeper[] replay(Trace trace, int core) throws IOException {
+        var shards = new RecordPeeper[peepers.length];
+        for (int i = 0; i < peepers.length; i++)
+            shards[i] = peepers[i].newShard();
+        var group = new PeeperGroup(shards);
+
+        try {
+            var batch = new Record[BATCH_SIZE];
+            int size = 0;
+            while (trace.hasNext()) {
+                Record record = trace.next();
+                /* a constraint may be ignored by the trace */
+                if (record == null || record.getCore() != core)
+                    continue;
+                batch[size++] = record;
+                if (size == BATCH_SIZE) {
+                    group.peep(batch, size);
+                    size = 0;
+                }
+            }
+            if (size > 0)
+                group.peep(batch, size);
+        } finally {
+            trace.close();
+        }
+
+        return shards;
+    }
+
+    private static Constraint ofCore(int core) {
+        return Constraint.ofCores(List.of(core));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <P extends CoreShardedPeeper<P>> void merge(CoreShardedPeeper<P> peeper, int core, RecordPeeper shard) {
+        peeper.merge(core, (P) shard);
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.francescociraolo.trace.reader;
+
+import com.github.francescociraolo.trace.ProcessInfoPool;
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.TraceTokenAnalyzer;
+import com.github.francescociraolo.trace.TraceTokenizer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+Reads a trace-cmd report as a pipeline: one thread tokenizes the stream in blocks, batches of tokens are analyzed
+by a pool of threads (each with its own analyzer) and the analyzed batches are taken back in the order they were
+tokenized, so that records come out in their original sequence. Reading pauses at the first batch past the time
+range of the constraint: the tokenizer blocks on the full queue until a wider constraint or close()
+ */
+public class PipelinedTrace extends Trace implements Closeable {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUED_BATCHES_PER_THREAD = 4;
+
+    private final TraceTokenizer tokenizer;
+    private final ThreadLocal<TraceTokenAnalyzer> analyzer;
+    private final ExecutorService analyzers;
+    private final BlockingQueue<Future<RecordBatch>> batches;
+    private final Thread tokenizerThread;
+    private final int cpus;
+    private volatile Throwable failure;
+    private volatile Constraint constraint = Constraint.NONE;
+
+    private RecordBatch current;
+    private int index;
+    /* the batch of the last record returned and the position of that record in it */
+    private RecordBatch returnedBatch;
+    private int returned = -1;
+    /* taken before the queue, when a wider constraint went back to the batch of the last record returned */
+    private RecordBatch following;
+    private boolean paused;
+
+    public PipelinedTrace(InputStream inputStream) throws IOException {
+        this(new AsciiTokenizer(inputStream), parsers(), Runtime.getRuntime().availableProcessors());
+    }
+
+    private static Supplier<AsciiRecordParser> parsers() {
+        var processes = new ProcessInfoPool();
+        return () -> new AsciiRecordParser(processes);
+    }
+
+    public PipelinedTrace(TraceTokenizer tokenizer,
+                          Supplier<? extends TraceTokenAnalyzer> analyzerFactory,
+                          int threads) throws IOException {
+        this.tokenizer = tokenizer;
+        this.analyzer = ThreadLocal.withInitial(analyzerFactory);
+
+        var threadCount = new AtomicInteger();
+        this.analyzers = Executors.newFixedThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, String.format("trace analyzer %d", threadCount.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batches = new ArrayBlockingQueue<>(threads * QUEUED_BATCHES_PER_THREAD);
+
+        if (!tokenizer.hasNext())
+            throw new RuntimeException("Wrong report format!");
+        var header = tokenizer.next();
+        if (!header.startsWith("cpus="))
+            throw new RuntimeException("Wrong report format!");
+
+        var newline = header.indexOf('\n');
+        this.cpus = Integer.parseInt(header.substring("cpus=".length(), newline < 0 ? header.length() : newline));
+        var firstToken = newline < 0 ? null : header.substring(newline);
+
+        this.tokenizerThread = new Thread(() -> tokenize(firstToken), "trace tokenizer");
+        tokenizerThread.setDaemon(true);
+        tokenizerThread.start();
+
+        advance();
+    }
+
+    private void tokenize(String firstToken) {
+        try {
+            try {
+                var tokens = new String[BATCH_SIZE];
+                int size = 0;
+
+                if (firstToken != null)
+                    tokens[size++] = firstToken;
+
+                while (tokenizer.hasNext()) {
+                    tokens[size++] = tokenizer.next();
+                    if (size == BATCH_SIZE) {
+                        submit(tokens, size);
+                        tokens = new String[BATCH_SIZE];
+                        size = 0;
+                    }
+                }
+
+                if (size > 0)
+                    submit(tokens, size);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                failure = throwable;
+            }
+            batches.put(CompletableFuture.completedFuture(RecordBatch.END));
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void submit(String[] tokens, int size) throws InterruptedException {
+        var constraint = this.constraint;
+        batches.put(analyzers.submit(() -> analyze(tokens, size, constraint)));
+    }
+
+    /*
+    Tokens without a record (or out of the constraint, for the analyzers able to check it) are dropped, a token past
+    the time range of the constraint ends the batch and the reading. Failures are kept in place to be thrown when
+    their turn comes
+     */
+    private RecordBatch analyze(String[] tokens, int size, Constraint constraint) {
+        var analyzer = this.analyzer.get();
+        if (analyzer instanceof AsciiRecordParser)
+            ((AsciiRecordParser) analyzer).setConstraint(constraint);
+        var batch = new RecordBatch(size, constraint, wider -> analyze(tokens, size, wider));
+
+        for (int i = 0; i < size; i++) {
+            try {
+                var record = analyzer.analyze(tokens[i]);
+                if (record != null)
+                    batch.add(record, i);
+            } catch (RuntimeException e) {
+                batch.addFailure(e, i);
+            }
+
+            if (analyzer instanceof AsciiRecordParser && ((AsciiRecordParser) analyzer).isPast()) {
+                batch.markLast();
+                break;
+            }
+        }
+
+        return batch;
+    }
+
+    /*
+    Batches analyzed under a constraint narrower than the current one are analyzed again on this thread
+     */
+    private void advance() throws IOException {
+        if (current == RecordBatch.END)
+            return;
+
+        while (current == null || ++index >= current.size()) {
+            if (current != null && current.isLast()) {
+                paused = true;
+                return;
+            }
+
+            if (following != null) {
+                current = following;
+                following = null;
+            } else {
+                try {
+                    current = batches.take().get();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException(e.getMessage());
+                } catch (ExecutionException e) {
+                    throw new IOException("Unable to analyze the trace", e.getCause());
+                }
+            }
+            index = -1;
+
+            if (current == RecordBatch.END) {
+                analyzers.shutdown();
+                if (failure != null)
+                    throw new IOException("Unable to tokenize the trace", failure);
+                return;
+            }
+            if (!current.covers(constraint))
+                current = current.parseAgain(constraint);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return current != RecordBatch.END && !paused;
+    }
+
+    @Override
+    public synchronized Record next() throws IOException {
+        if (!hasNext()) throw new EOFException();
+
+        var batch = current;
+        int index = this.index;
+        returnedBatch = batch;
+        returned = batch.getPosition(index);
+        advance();
+
+        return batch.get(index);
+    }
+
+    /*
+    Applies to the batches analyzed from now on. A constraint accepting records the previous one dropped analyzes
+    again the batches from the token after the last record returned, and resumes a paused reading
+     */
+    @Override
+    public synchronized void pushDown(Constraint constraint) throws IOException {
+        this.constraint = constraint;
+        if (returnedBatch != null && returnedBatch != current && !returnedBatch.covers(constraint)) {
+            following = current;
+            resume(returnedBatch, returned);
+        } else if (current != null && current != RecordBatch.END && !current.covers(constraint))
+            resume(current, current == returnedBatch ? returned : -1);
+    }
+
+    private void resume(RecordBatch batch, int after) throws IOException {
+        current = batch.parseAgain(constraint);
+        if (batch == returnedBatch)
+            returnedBatch = current;
+        index = current.indexAfter(after) - 1;
+        paused = false;
+        advance();
+    }
+
+    @Override
+    public int getCpusCount() {
+        return cpus;
+    }
+
+    @Override
+    public void close() throws IOException {
+        tokenizerThread.interrupt();
+        analyzers.shutdownNow();
+        tokenizer.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.francescociraolo.trace.reader;
+
+import com.github.francescociraolo.trace.Record;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/*
+Records parsed together by one task, a parsing failure takes the place of the record it prevented and is thrown
+when that record is asked for. Every record keeps the position of the block it comes from, so that the same input
+parsed again under a wider constraint can be resumed after the last record returned
+ */
+class RecordBatch {
+
+    static final RecordBatch END = new RecordBatch(0, Constraint.NONE, null);
+
+    private final Constraint constraint;
+    private final Function<Constraint, RecordBatch> parser;
+    private Record[] records;
+    private int[] positions;
+    private RuntimeException[] failures;
+    private int size;
+    private boolean last;
+
+    /*
+    The parser parses the same input again under another constraint
+     */
+    RecordBatch(int capacity, Constraint constraint, Function<Constraint, RecordBatch> parser) {
+        this.constraint = constraint;
+        this.parser = parser;
+        this.records = new Record[capacity];
+        this.positions = new int[capacity];
+    }
+
+    void add(Record record, int position) {
+        if (size == records.length) {
+            records = Arrays.copyOf(records, Math.max(16, size * 2));
+            positions = Arrays.copyOf(positions, records.length);
+        }
+        positions[size] = position;
+        records[size++] = record;
+    }
+
+    void addFailure(RuntimeException failure, int position) {
+        add(null, position);
+        if (failures == null)
+            failures = new RuntimeException[records.length];
+        else if (failures.length < records.length)
+            failures = Arrays.copyOf(failures, records.length);
+        failures[size - 1] = failure;
+    }
+
+    /*
+    No record of the trace after this batch is wanted
+     */
+    void markLast() {
+        last = true;
+    }
+
+    boolean isLast() {
+        return last;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getPosition(int index) {
+        return positions[index];
+    }
+
+    /*
+    Index of the first record from a block after the given position, size() when none; a block gives at most one
+    record, so positions are increasing
+     */
+    int indexAfter(int position) {
+        int index = Arrays.binarySearch(positions, 0, size, position + 1);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    /*
+    Whether the records dropped under the constraint of this batch are dropped under the given one too
+     */
+    boolean covers(Constraint constraint) {
+        return this.constraint.contains(constraint);
+    }
+
+    RecordBatch parseAgain(Constraint constraint) {
+        return parser.apply(constraint);
+    }
+
+    Record get(int index) {
+        if (failures != null && index < failures.length && failures[index] != null)
+            throw failures[index];
+        return records[index];
+    }
+}
@@ -1,8 +1,26 @@
 package com.github.francescociraolo.trace.reader;
 
 import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.RecordSpecification;
+
+import java.util.EnumSet;
 
 public interface RecordPeeper {
 
     void peep(Record record);
+
+    /*
+    The first n records of the batch, in trace order. Peepers able to handle them together override it
+     */
+    default void peepBatch(Record[] batch, int n) {
+        for (int i = 0; i < n; i++)
+            peep(batch[i]);
+    }
+
+    /*
+    Types of the records the peeper looks at, it is not shown the others. Asked once, when it is added to a trace
+     */
+    default EnumSet<RecordSpecification.Type> interests() {
+        return EnumSet.allOf(RecordSpecification.Type.class);
+    }
 }
@@ -0,0 +1,250 @@
+package com.github.francescociraolo.trace.reader;
+
+import com.github.francescociraolo.trace.ProcessInfoPool;
+import com.github.francescociraolo.trace.Record;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/*
+Parses a trace-cmd report file in byte ranges on a ForkJoinPool. Every split point is moved forward to the next
+"\n " boundary, where AsciiTrace would cut a block anyway, so the ranges hold whole blocks and concatenating their
+records in order gives the same sequence a single reader would. No range is submitted after one past the time range
+of the constraint, until a wider constraint resumes the reading
+ */
+class ReportChunks implements Closeable {
+
+    private static final int CHUNK_SIZE = 8 << 20;
+    private static final int WINDOW_SIZE = 1 << 16;
+    private static final int HEADER_SIZE = 64;
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    private final FileChannel channel;
+    private final ForkJoinPool pool;
+    private final ProcessInfoPool processes;
+    private final long size;
+    private final int cpus;
+
+    private final Queue<ForkJoinTask<RecordBatch>> chunks;
+    private final int maxChunks;
+    private long nextStart;
+    private Constraint constraint = Constraint.NONE;
+
+    private RecordBatch current;
+    private int index;
+    /* the batch of the last record returned and the position of that record in it */
+    private RecordBatch returnedBatch;
+    private int returned = -1;
+    /* taken before the queue, when a wider constraint went back to the batch of the last record returned */
+    private RecordBatch following;
+    private boolean paused;
+
+    ReportChunks(Path path, ForkJoinPool pool) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.pool = pool;
+        this.processes = new ProcessInfoPool();
+        this.size = channel.size();
+        this.chunks = new ArrayDeque<>();
+        this.maxChunks = pool.getParallelism() * CHUNKS_PER_THREAD;
+
+        var header = read(0, (int) Math.min(HEADER_SIZE, size));
+        int position = "cpus=".length(), cpus = 0;
+        if (header.length <= position || !"cpus=".equals(new String(header, 0, position, StandardCharsets.ISO_8859_1)))
+            throw new RuntimeException("Wrong report format!");
+        for (; position < header.length && header[position] != '\n'; position++) {
+            cpus *= 10;
+            cpus += header[position] - '0';
+        }
+        if (position == header.length)
+            throw new RuntimeException("Wrong report format!");
+        this.cpus = cpus;
+
+        /* the newline closing the header is the boundary before the first record, as in AsciiTrace */
+        this.nextStart = position;
+
+        advance();
+    }
+
+    int getCpus() {
+        return cpus;
+    }
+
+    /*
+    Applies to the ranges submitted from now on. A constraint accepting records the previous one dropped parses
+    again the ranges from the block after the last record returned, and resumes a paused reading
+     */
+    void setConstraint(Constraint constraint) throws IOException {
+        this.constraint = constraint;
+        if (returnedBatch != null && returnedBatch != current && !returnedBatch.covers(constraint)) {
+            following = current;
+            resume(returnedBatch, returned);
+        } else if (current != null && current != RecordBatch.END && !current.covers(constraint))
+            resume(current, current == returnedBatch ? returned : -1);
+    }
+
+    private void resume(RecordBatch batch, int after) throws IOException {
+        current = parseAgain(batch);
+        if (batch == returnedBatch)
+            returnedBatch = current;
+        index = current.indexAfter(after) - 1;
+        paused = false;
+        advance();
+    }
+
+    boolean hasNext() {
+        return current != RecordBatch.END && !paused;
+    }
+
+    Record next() throws IOException {
+        if (!hasNext()) throw new EOFException();
+
+        var batch = current;
+        int index = this.index;
+        returnedBatch = batch;
+        returned = batch.getPosition(index);
+        advance();
+
+        return batch.get(index);
+    }
+
+    /*
+    Ranges parsed under a constraint narrower than the current one are parsed again on this thread
+     */
+    private void advance() throws IOException {
+        if (current == RecordBatch.END)
+            return;
+
+        while (current == null || ++index >= current.size()) {
+            if (current != null && current.isLast()) {
+                paused = true;
+                return;
+            }
+
+            if (following != null) {
+                current = following;
+                following = null;
+                if (current == RecordBatch.END)
+                    return;
+            } else {
+                while (chunks.size() < maxChunks && nextStart < size)
+                    submitNext();
+
+                var chunk = chunks.poll();
+                if (chunk == null) {
+                    current = RecordBatch.END;
+                    return;
+                }
+
+                try {
+                    current = chunk.join();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            index = -1;
+
+            if (!current.covers(constraint))
+                current = parseAgain(current);
+        }
+    }
+
+    private RecordBatch parseAgain(RecordBatch batch) throws IOException {
+        try {
+            return batch.parseAgain(constraint);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void submitNext() throws IOException {
+        long start = nextStart,
+                end = start + CHUNK_SIZE < size ? nextBoundary(start + CHUNK_SIZE) : size;
+        nextStart = end + 1;
+
+        var constraint = this.constraint;
+        chunks.add(pool.submit(() -> parse(start, end, constraint)));
+    }
+
+    private RecordBatch parse(long start, long end, Constraint constraint) {
+        try {
+            return parse(read(start, Math.toIntExact(end - start)), constraint,
+                    wider -> parse(start, end, wider));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+    Position of the first newline followed by a space from the given one, or the end of the file
+     */
+    private long nextBoundary(long from) throws IOException {
+        for (long windowStart = from; windowStart < size - 1; windowStart += WINDOW_SIZE) {
+            var window = read(windowStart, (int) Math.min(WINDOW_SIZE + 1, size - windowStart));
+            for (int i = 0; i + 1 < window.length; i++)
+                if (window[i] == '\n' && window[i + 1] == ' ')
+                    return windowStart + i;
+        }
+        return size;
+    }
+
+    /*
+    Same blocks as BlockReader: each one ends at a newline followed by a space, which is dropped. A block past the
+    time range of the constraint ends the range and the whole reading
+     */
+    private RecordBatch parse(byte[] bytes, Constraint constraint, Function<Constraint, RecordBatch> parseAgain) {
+        var parser = new AsciiRecordParser(processes);
+        parser.setConstraint(constraint);
+        var batch = new RecordBatch(bytes.length / 64, constraint, parseAgain);
+
+        for (int blockStart = 0; blockStart < bytes.length; ) {
+            int blockEnd = blockStart;
+            while (blockEnd < bytes.length
+                    && !(bytes[blockEnd] == '\n' && blockEnd + 1 < bytes.length && bytes[blockEnd + 1] == ' '))
+                blockEnd++;
+
+            try {
+                var record = parser.parse(bytes, blockStart, blockEnd);
+                if (record != null)
+                    batch.add(record, blockStart);
+            } catch (RuntimeException e) {
+                batch.addFailure(e, blockStart);
+            }
+
+            if (parser.isPast()) {
+                batch.markLast();
+                break;
+            }
+
+            blockStart = blockEnd + 1;
+        }
+
+        return batch;
+    }
+
+    private byte[] read(long position, int length) throws IOException {
+        var bytes = new byte[length];
+        var buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunks.forEach(chunk -> chunk.cancel(true));
+        channel.close();
+    }
+}
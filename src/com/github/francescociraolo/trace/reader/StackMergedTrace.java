@@ -99,4 +99,9 @@ public class StackMergedTrace extends Trace {
 
         return record;
     }
+
+    @Override
+    public void close() throws IOException {
+        trace.close();
+    }
 }
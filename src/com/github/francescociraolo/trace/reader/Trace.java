@@ -1,11 +1,15 @@
 package com.github.francescociraolo.trace.reader;
 
 import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.reader.dat.DatFile;
+import com.github.francescociraolo.trace.reader.dat.DatTrace;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.function.Predicate;
 
-public abstract class Trace {
+public abstract class Trace implements Closeable {
 
     public abstract boolean hasNext();
 
@@ -18,7 +22,73 @@ public abstract class Trace {
 
     public abstract int getCpusCount();
 
+    /*
+    Whether the seek methods are supported
+     */
+    public boolean isSeekable() {
+        return false;
+    }
+
+    /*
+    Moves to the first record not before the timestamp: next() returns it, then the records following it
+     */
+    public void seek(Record.Timestamp timestamp) throws IOException {
+        throw new UnsupportedOperationException("The trace is not seekable");
+    }
+
+    /*
+    Moves to the first record of the core not before the timestamp, skipping the records of other cores before it.
+    Without such a record the trace ends
+     */
+    public void seek(int core, Record.Timestamp timestamp) throws IOException {
+        throw new UnsupportedOperationException("The trace is not seekable");
+    }
+
+    /*
+    Lets the reader drop the records out of the constraint before parsing them completely, for traces read through a
+    filter: seekable readers move to the start of its time range and readers end past it, as traces are ordered by
+    timestamp. It replaces any previous constraint, records already parsed under that one are not read again
+     */
+    public void pushDown(Constraint constraint) throws IOException {
+    }
+
+    /*
+    The records of this trace accepted by the filter, reading this trace
+     */
+    public Trace filtered(Predicate<Record> filter) throws IOException {
+        return new FilteredTrace(this, filter);
+    }
+
+    /*
+    Releases the threads and files held by the reader; a trace reading another one closes it too
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
     public static Trace fromDatFile(Path datFilePath) throws IOException {
-        return new AsciiTrace(new DatReader(datFilePath));
+        if (DatFile.isSupported(datFilePath))
+            return new DatTrace(datFilePath);
+        return fromReport(datFilePath);
+    }
+
+    /*
+    As fromDatFile(Path), pushing the constraint down before anything is read: DatTrace does not even start the
+    decoders of the CPUs out of it
+     */
+    public static Trace fromDatFile(Path datFilePath, Constraint constraint) throws IOException {
+        if (DatFile.isSupported(datFilePath))
+            return new DatTrace(datFilePath, constraint);
+        var trace = fromReport(datFilePath);
+        trace.pushDown(constraint);
+        return trace;
+    }
+
+    /*
+    Lets trace-cmd format the trace, for the trace.dat versions DatTrace is not able to decode.
+    The report is tokenized and parsed by different threads
+     */
+    public static Trace fromReport(Path datFilePath) throws IOException {
+        return new PipelinedTrace(new DatReader(datFilePath));
     }
 }
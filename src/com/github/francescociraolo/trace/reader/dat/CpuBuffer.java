@@ -0,0 +1,199 @@
+package com.github.francescociraolo.trace.reader.dat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/*
+Walks the ring buffer pages recorded for a single CPU, one data event at a time. The CPU section is memory mapped
+(in regions of at most 2GB) and events are addressed by their absolute index inside the current region
+ */
+class CpuBuffer {
+
+    private static final long COMMIT_MASK = (1 << 27) - 1;
+    private static final int TS_SHIFT = 27;
+
+    private static final int TYPE_DATA_LENGTH = 0;
+    private static final int TYPE_PADDING = 29;
+    private static final int TYPE_TIME_EXTEND = 30;
+    private static final int TYPE_TIME_STAMP = 31;
+
+    private final DatFile datFile;
+    private final FileChannel channel;
+    private final int cpu;
+    private final int pageSize;
+    private final long maxRegionSize;
+    private final boolean littleEndian;
+
+    private ByteBuffer region;
+    private long regionStart;
+
+    private long nextPage;
+    private final long start;
+    private final long end;
+
+    private int position;
+    private int dataEnd;
+    private long timestamp;
+
+    private int eventOffset;
+    private int eventLength;
+
+    private int markPosition;
+    private long markTimestamp;
+    private int markEventOffset;
+    private int markEventLength;
+
+    CpuBuffer(DatFile datFile, FileChannel channel, int cpu) {
+        this.datFile = datFile;
+        this.channel = channel;
+        this.cpu = cpu;
+        this.pageSize = datFile.getPageSize();
+        this.maxRegionSize = (Integer.MAX_VALUE / pageSize) * (long) pageSize;
+        this.littleEndian = datFile.getOrder() == ByteOrder.LITTLE_ENDIAN;
+
+        this.start = datFile.getCpuOffset(cpu);
+        this.nextPage = start;
+        this.end = start + datFile.getCpuSize(cpu);
+    }
+
+    int getCpu() {
+        return cpu;
+    }
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    ByteBuffer getPage() {
+        return region;
+    }
+
+    int getEventOffset() {
+        return eventOffset;
+    }
+
+    int getEventLength() {
+        return eventLength;
+    }
+
+    /*
+    Moves to the next data event, loading following pages as needed
+     */
+    boolean next() throws IOException {
+        while (!nextInPage())
+            if (!loadPage())
+                return false;
+        return true;
+    }
+
+    /*
+    Moves to the next data event without leaving the current page, so that mark and reset stay cheap
+     */
+    boolean nextInPage() {
+        while (position + 4 <= dataEnd) {
+            int header = region.getInt(position), typeLength, delta, data = position + 4, length;
+
+            if (littleEndian) {
+                typeLength = header & 0x1F;
+                delta = header >>> 5;
+            } else {
+                typeLength = header >>> TS_SHIFT;
+                delta = header & (int) COMMIT_MASK;
+            }
+
+            switch (typeLength) {
+                case TYPE_PADDING:
+                    length = region.getInt(data);
+                    timestamp += delta;
+                    position = length > 0 ? data + length : dataEnd;
+                    continue;
+                case TYPE_TIME_EXTEND:
+                    timestamp += ((region.getInt(data) & 0xFFFFFFFFL) << TS_SHIFT) + delta;
+                    position = data + 4;
+                    continue;
+                case TYPE_TIME_STAMP:
+                    timestamp = ((region.getInt(data) & 0xFFFFFFFFL) << TS_SHIFT) + delta;
+                    position = data + 4;
+                    continue;
+                case TYPE_DATA_LENGTH:
+                    length = (region.getInt(data) - 4 + 3) & ~3;
+                    data += 4;
+                    break;
+                default:
+                    length = typeLength * 4;
+                    break;
+            }
+
+            timestamp += delta;
+            eventOffset = data;
+            eventLength = length;
+            position = data + length;
+            return true;
+        }
+
+        return false;
+    }
+
+    /*
+    Moves before the last page starting before the timestamp: pages are written in time order, so every event of
+    the CPU from the timestamp on is in that page or in the following ones
+     */
+    void seek(long timestamp) throws IOException {
+        long low = 0, high = (end - start) / pageSize - 1, page = 0;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int pageOffset = map(start + middle * pageSize);
+            if (datFile.getPageTimestamp().get(region, pageOffset) < timestamp) {
+                page = middle;
+                low = middle + 1;
+            } else
+                high = middle - 1;
+        }
+
+        nextPage = start + page * pageSize;
+        position = dataEnd = 0;
+    }
+
+    void mark() {
+        markPosition = position;
+        markTimestamp = timestamp;
+        markEventOffset = eventOffset;
+        markEventLength = eventLength;
+    }
+
+    void reset() {
+        position = markPosition;
+        timestamp = markTimestamp;
+        eventOffset = markEventOffset;
+        eventLength = markEventLength;
+    }
+
+    private boolean loadPage() throws IOException {
+        if (nextPage >= end)
+            return false;
+
+        int pageOffset = map(nextPage);
+        nextPage += pageSize;
+
+        timestamp = datFile.getPageTimestamp().get(region, pageOffset);
+        dataEnd = pageOffset + (int) Math.min(pageSize,
+                datFile.getPageDataOffset() + (datFile.getPageCommit().get(region, pageOffset) & COMMIT_MASK));
+        position = pageOffset + datFile.getPageDataOffset();
+        return true;
+    }
+
+    /*
+    Offset of the page in the region, mapping a new region from the page when it is out of the current one
+     */
+    private int map(long page) throws IOException {
+        if (region == null || page < regionStart || page + pageSize > regionStart + region.capacity()) {
+            regionStart = page;
+            region = channel
+                    .map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(maxRegionSize, end - regionStart))
+                    .order(datFile.getOrder());
+        }
+        return (int) (page - regionStart);
+    }
+}
@@ -0,0 +1,251 @@
+package com.github.francescociraolo.trace.reader.dat;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Metadata of a trace-cmd (version 6) trace.dat file: everything before the per-CPU ring buffer sections
+ */
+public class DatFile {
+
+    private static final byte[] MAGIC = {0x17, 0x08, 0x44, 't', 'r', 'a', 'c', 'i', 'n', 'g'};
+    private static final int SUPPORTED_VERSION = 6;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+    private final ByteOrder order;
+    private final int longSize;
+    private final int pageSize;
+
+    private final EventFormat.Field pageTimestamp;
+    private final EventFormat.Field pageCommit;
+    private final int pageDataOffset;
+
+    private final Map<Integer, EventFormat> formats;
+    private final KernelSymbols symbols;
+    private final Map<Integer, String> cmdlines;
+
+    private final int cpus;
+    private final long[] cpuOffsets;
+    private final long[] cpuSizes;
+
+    private DatFile(Path path) throws IOException {
+        this.path = path;
+
+        try (var input = new HeaderInput(Files.newInputStream(path))) {
+            if (!Arrays.equals(input.readBytes(MAGIC.length), MAGIC))
+                throw new IOException("Not a trace.dat file: " + path);
+
+            var version = input.readString();
+            if (!String.valueOf(SUPPORTED_VERSION).equals(version))
+                throw new IOException(String.format("Unsupported trace.dat version %s: %s", version, path));
+
+            this.order = input.readByte() == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            input.order = order;
+            this.longSize = input.readByte();
+            this.pageSize = input.readInt();
+
+            input.expectString("header_page");
+            var pageFields = EventFormat.parseFields(input.readText(input.readLong()));
+            this.pageTimestamp = pageFields.get("timestamp");
+            this.pageCommit = pageFields.get("commit");
+            this.pageDataOffset = pageFields.get("data").getOffset();
+
+            input.expectString("header_event");
+            input.skip(input.readLong());
+
+            this.formats = new HashMap<>();
+            for (int i = input.readInt(); i > 0; i--)
+                addFormat(EventFormat.parse("ftrace", input.readText(input.readLong())));
+
+            for (int systems = input.readInt(); systems > 0; systems--) {
+                var system = input.readString();
+                for (int i = input.readInt(); i > 0; i--)
+                    addFormat(EventFormat.parse(system, input.readText(input.readLong())));
+            }
+
+            this.symbols = KernelSymbols.parse(input.readText(input.readInt() & 0xFFFFFFFFL));
+            input.skip(input.readInt() & 0xFFFFFFFFL);
+
+            this.cmdlines = new HashMap<>();
+            for (String line : input.readText(input.readLong()).split("\n")) {
+                int space = line.indexOf(' ');
+                if (space > 0)
+                    cmdlines.put(Integer.parseInt(line.substring(0, space)), line.substring(space + 1));
+            }
+
+            this.cpus = input.readInt();
+
+            var section = input.readBytes(10);
+            if (Arrays.equals(section, "options  \0".getBytes(StandardCharsets.ISO_8859_1))) {
+                for (int option = input.readShort(); option != 0; option = input.readShort())
+                    input.skip(input.readInt() & 0xFFFFFFFFL);
+                section = input.readBytes(10);
+            }
+
+            if (!Arrays.equals(section, "flyrecord\0".getBytes(StandardCharsets.ISO_8859_1)))
+                throw new IOException("Only flyrecord trace.dat files are supported: " + path);
+
+            this.cpuOffsets = new long[cpus];
+            this.cpuSizes = new long[cpus];
+            for (int cpu = 0; cpu < cpus; cpu++) {
+                cpuOffsets[cpu] = input.readLong();
+                cpuSizes[cpu] = input.readLong();
+            }
+        }
+    }
+
+    private void addFormat(EventFormat format) {
+        formats.put(format.getId(), format);
+    }
+
+    public static DatFile open(Path path) throws IOException {
+        return new DatFile(path);
+    }
+
+    /*
+    Cheap check used to decide whether trace-cmd is still needed to read the file
+     */
+    public static boolean isSupported(Path path) {
+        try (var input = new HeaderInput(Files.newInputStream(path))) {
+            return Arrays.equals(input.readBytes(MAGIC.length), MAGIC)
+                    && String.valueOf(SUPPORTED_VERSION).equals(input.readString());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public ByteOrder getOrder() {
+        return order;
+    }
+
+    public int getLongSize() {
+        return longSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    EventFormat.Field getPageTimestamp() {
+        return pageTimestamp;
+    }
+
+    EventFormat.Field getPageCommit() {
+        return pageCommit;
+    }
+
+    int getPageDataOffset() {
+        return pageDataOffset;
+    }
+
+    public EventFormat getFormat(int id) {
+        return formats.get(id);
+    }
+
+    public Collection<EventFormat> getFormats() {
+        return formats.values();
+    }
+
+    public KernelSymbols getSymbols() {
+        return symbols;
+    }
+
+    public String getCommand(int pid) {
+        return cmdlines.get(pid);
+    }
+
+    public int getCpus() {
+        return cpus;
+    }
+
+    public long getCpuOffset(int cpu) {
+        return cpuOffsets[cpu];
+    }
+
+    public long getCpuSize(int cpu) {
+        return cpuSizes[cpu];
+    }
+
+    private static class HeaderInput implements AutoCloseable {
+
+        private final DataInputStream input;
+        private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+        private HeaderInput(InputStream inputStream) {
+            this.input = new DataInputStream(new BufferedInputStream(inputStream, BUFFER_SIZE));
+        }
+
+        private byte readByte() throws IOException {
+            return input.readByte();
+        }
+
+        private byte[] readBytes(int length) throws IOException {
+            var bytes = new byte[length];
+            input.readFully(bytes);
+            return bytes;
+        }
+
+        private short readShort() throws IOException {
+            var value = input.readShort();
+            return order == ByteOrder.BIG_ENDIAN ? value : Short.reverseBytes(value);
+        }
+
+        private int readInt() throws IOException {
+            var value = input.readInt();
+            return order == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value);
+        }
+
+        private long readLong() throws IOException {
+            var value = input.readLong();
+            return order == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value);
+        }
+
+        private String readString() throws IOException {
+            var builder = new StringBuilder();
+            for (int c = input.read(); c != 0; c = input.read()) {
+                if (c == -1) throw new EOFException();
+                builder.append((char) c);
+            }
+            return builder.toString();
+        }
+
+        private void expectString(String expected) throws IOException {
+            var found = readString();
+            if (!expected.equals(found))
+                throw new IOException(String.format("Expected %s section, found %s", expected, found));
+        }
+
+        private String readText(long length) throws IOException {
+            return new String(readBytes(Math.toIntExact(length)), StandardCharsets.ISO_8859_1);
+        }
+
+        private void skip(long length) throws IOException {
+            while (length > 0) {
+                var skipped = input.skip(length);
+                if (skipped <= 0) throw new EOFException();
+                length -= skipped;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.github.francescociraolo.trace.reader.dat;
+
+import com.github.francescociraolo.trace.ProcessInfoPool;
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.reader.Constraint;
+import com.github.francescociraolo.trace.reader.Trace;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.IntToLongFunction;
+
+/*
+Reads the binary trace.dat directly instead of asking trace-cmd to format it as text to be parsed back.
+Every CPU section is memory mapped and decoded by its own thread, the main thread only k-way merges the per-CPU
+streams by timestamp
+ */
+public class DatTrace extends Trace implements Closeable {
+
+    private static final int BATCH_SIZE = 4096;
+    private static final int QUEUED_BATCHES = 4;
+
+    private final DatFile datFile;
+    private final FileChannel channel;
+    private final ProcessInfoPool processes;
+    private final List<CpuStream> streams;
+    private final PriorityQueue<CpuStream> heads;
+
+    private Record nextRecord;
+    private volatile Constraint constraint = Constraint.NONE;
+    /* where the last record returned was merged: CPUs up to lastCpu are past lastNanos, the others at it */
+    private long lastNanos = Long.MIN_VALUE;
+    private int lastCpu = -1;
+
+    public DatTrace(Path datFilePath) throws IOException {
+        this(datFilePath, Constraint.NONE);
+    }
+
+    /*
+    Only the CPUs accepted by the constraint are decoded, from the start of its time range
+     */
+    public DatTrace(Path datFilePath, Constraint constraint) throws IOException {
+        this.constraint = constraint;
+        this.datFile = DatFile.open(datFilePath);
+        this.channel = FileChannel.open(datFilePath, StandardOpenOption.READ);
+        this.processes = new ProcessInfoPool();
+        this.streams = new ArrayList<>();
+        this.heads = new PriorityQueue<>(Math.max(1, datFile.getCpus()),
+                Comparator.comparingLong(CpuStream::getTimestamp).thenComparingInt(CpuStream::getCpu));
+
+        start(cpu -> constraint.getFrom());
+    }
+
+    /*
+    Decodes every CPU from the given timestamp on, the CPUs out of the constraint are not even started
+     */
+    private void start(IntToLongFunction from) throws IOException {
+        for (int cpu = 0; cpu < datFile.getCpus(); cpu++)
+            if (datFile.getCpuSize(cpu) > 0 && constraint.acceptsCore(cpu))
+                streams.add(new CpuStream(cpu, from.applyAsLong(cpu)));
+
+        for (CpuStream stream : streams)
+            if (stream.advance())
+                heads.add(stream);
+
+        advance();
+    }
+
+    private void stop() throws IOException {
+        for (CpuStream stream : streams)
+            stream.stop();
+        streams.clear();
+        heads.clear();
+        nextRecord = null;
+    }
+
+    private void advance() throws IOException {
+        nextRecord = null;
+        if (!heads.isEmpty()) {
+            var stream = heads.poll();
+            nextRecord = stream.getRecord();
+            if (stream.advance())
+                heads.add(stream);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextRecord != null;
+    }
+
+    @Override
+    public synchronized Record next() throws IOException {
+        if (!hasNext()) throw new EOFException();
+
+        Record record = nextRecord;
+        lastNanos = record.getTimestamp().getNanos();
+        lastCpu = record.getCore();
+        advance();
+        return record;
+    }
+
+    @Override
+    public int getCpusCount() {
+        return datFile.getCpus();
+    }
+
+    @Override
+    public boolean isSeekable() {
+        return true;
+    }
+
+    @Override
+    public synchronized void seek(Record.Timestamp timestamp) throws IOException {
+        stop();
+        lastNanos = timestamp.getNanos();
+        lastCpu = -1;
+        start(cpu -> timestamp.getNanos());
+    }
+
+    /*
+    The other CPUs restart from the record found, the ones merged before it at the same timestamp excluded
+     */
+    @Override
+    public synchronized void seek(int core, Record.Timestamp timestamp) throws IOException {
+        stop();
+        lastNanos = Long.MAX_VALUE;
+        lastCpu = -1;
+        if (core < 0 || core >= datFile.getCpus() || datFile.getCpuSize(core) == 0)
+            return;
+
+        var stream = new CpuStream(core, timestamp.getNanos());
+        boolean found;
+        try {
+            found = stream.advance();
+        } finally {
+            stream.stop();
+        }
+        if (!found)
+            return;
+
+        long first = stream.getTimestamp();
+        lastNanos = first;
+        lastCpu = core - 1;
+        start(cpu -> cpu < core ? first + 1 : first);
+    }
+
+    /*
+    CPUs out of it are stopped right away, the others pick it up at their next batch and stop once past its time
+    range. A constraint accepting records the previous one dropped (a CPU stopped, events decoded away, a range
+    ended) restarts every CPU from the last record returned; when its range starts after the next record, every
+    CPU restarts from there as on a seek
+     */
+    @Override
+    public synchronized void pushDown(Constraint constraint) throws IOException {
+        var previous = this.constraint;
+        this.constraint = constraint;
+        if (!previous.contains(constraint)) {
+            stop();
+            start(cpu -> Math.max(constraint.getFrom(), cpu <= lastCpu ? lastNanos + 1 : lastNanos));
+            return;
+        }
+        if (nextRecord != null && nextRecord.getTimestamp().getNanos() < constraint.getFrom()) {
+            stop();
+            start(cpu -> constraint.getFrom());
+            return;
+        }
+
+        for (var iterator = streams.iterator(); iterator.hasNext(); ) {
+            var stream = iterator.next();
+            if (!constraint.acceptsCore(stream.getCpu())) {
+                stream.stop();
+                heads.remove(stream);
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            stop();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static class Batch {
+        private static final Batch END = new Batch(0);
+
+        private final Record[] records;
+        private final long[] timestamps;
+        private int size;
+
+        private Batch(int capacity) {
+            records = new Record[capacity];
+            timestamps = new long[capacity];
+        }
+
+        private boolean add(Record record, long timestamp) {
+            records[size] = record;
+            timestamps[size] = timestamp;
+            return ++size == records.length;
+        }
+    }
+
+    /*
+    Decoders are stopped through a flag rather than interrupted: the streams share the channel, which an interrupt
+    during a mapping would close for all of them
+     */
+    private class CpuStream implements Runnable {
+
+        private final int cpu;
+        private final Thread thread;
+        private final BlockingQueue<Batch> queue;
+        private volatile Throwable failure;
+        private volatile boolean stopped;
+
+        private Batch current;
+        private int index;
+
+        /* events before it are dropped */
+        private final long from;
+
+        private CpuStream(int cpu, long from) {
+            this.cpu = cpu;
+            this.from = from;
+            this.queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+            this.thread = new Thread(this, String.format("trace.dat CPU %d", cpu));
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                try {
+                    var buffer = new CpuBuffer(datFile, channel, cpu);
+                    var decoder = new EventDecoder(datFile, processes);
+                    var batch = new Batch(BATCH_SIZE);
+                    var constraint = DatTrace.this.constraint;
+                    decoder.setConstraint(constraint);
+
+                    if (from != Long.MIN_VALUE)
+                        buffer.seek(from);
+
+                    while (!stopped && constraint.acceptsCore(cpu) && buffer.next()) {
+                        long timestamp = buffer.getTimestamp();
+                        if (constraint.isPast(timestamp))
+                            break;
+                        Record record = decoder.decode(buffer);
+                        if (record != null && timestamp >= from && batch.add(record, timestamp)) {
+                            queue.put(batch);
+                            batch = new Batch(BATCH_SIZE);
+                            constraint = DatTrace.this.constraint;
+                            decoder.setConstraint(constraint);
+                        }
+                    }
+
+                    if (batch.size > 0 && !stopped)
+                        queue.put(batch);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Throwable throwable) {
+                    failure = throwable;
+                }
+                if (!stopped)
+                    queue.put(Batch.END);
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        private boolean advance() throws IOException {
+            if (current != null && ++index < current.size)
+                return true;
+
+            try {
+                current = queue.take();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException(e.getMessage());
+            }
+            index = 0;
+
+            if (current == Batch.END) {
+                if (failure != null)
+                    throw new IOException(String.format("Unable to decode CPU %d of %s", cpu, datFile.getPath()), failure);
+                return false;
+            }
+            return true;
+        }
+
+        private int getCpu() {
+            return cpu;
+        }
+
+        private long getTimestamp() {
+            return current.timestamps[index];
+        }
+
+        private Record getRecord() {
+            return current.records[index];
+        }
+
+        /*
+        Once the flag is set the decoder puts at most the batch it was filling and the last one, the queue emptied
+        here has room for both
+         */
+        private void stop() throws IOException {
+            stopped = true;
+            queue.clear();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.github.francescociraolo.trace.reader.dat;
+
+import com.github.francescociraolo.trace.ProcessInfo;
+import com.github.francescociraolo.trace.ProcessInfoPool;
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.RecordSpecification;
+import com.github.francescociraolo.trace.RecordSpecification.FunctionGraphSpec.Duration;
+import com.github.francescociraolo.trace.SimpleRecord;
+import com.github.francescociraolo.trace.StackTraceEntry;
+import com.github.francescociraolo.trace.reader.Constraint;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/*
+Turns the raw ring buffer events into records, mimicking what trace-cmd report (and its sched, function and
+function_graph plugins) would print for them
+ */
+class EventDecoder {
+
+    private static final String TASK_STATES = "SDTtXZPI";
+    private static final int TASK_REPORT_MASK = 0xFF;
+    private static final int TIMESTAMP_DIGITS = 9;
+
+    private final DatFile datFile;
+    private final KernelSymbols symbols;
+    private final EventFormat.Field commonType;
+    private final EventFormat.Field commonPid;
+
+    private final RecordSpecification.Type[] types;
+    private final EventFormat[] formats;
+    private final ProcessInfoPool processPool;
+    private final ProcessInfoPool.Table processTable;
+    private final Map<Integer, ProcessInfo> processes;
+    private final byte[] name;
+    private Constraint constraint = Constraint.NONE;
+
+    private final SwitchFields switchFields;
+    private final WakeupFields wakeupFields;
+    private final WakeupFields wakeupNewFields;
+    private final MigrateFields migrateFields;
+    private final FunctionFields functionFields;
+    private final GraphFields graphEntryFields;
+    private final GraphFields graphExitFields;
+    private final StackFields stackFields;
+
+    EventDecoder(DatFile datFile, ProcessInfoPool processPool) {
+        this.datFile = datFile;
+        this.symbols = datFile.getSymbols();
+        this.processPool = processPool;
+        this.processTable = processPool.newTable();
+        this.processes = new HashMap<>();
+        this.name = new byte[EventFormat.Field.MAX_STRING_LENGTH];
+
+        int maxId = 0;
+        for (EventFormat format : datFile.getFormats())
+            maxId = Math.max(maxId, format.getId());
+        this.types = new RecordSpecification.Type[maxId + 1];
+        this.formats = new EventFormat[maxId + 1];
+
+        EventFormat.Field type = null, pid = null;
+        for (EventFormat format : datFile.getFormats()) {
+            var recordType = RecordSpecification.Type.findTypeByString(format.getName());
+            if (recordType.isPresent()) {
+                types[format.getId()] = recordType.get();
+                formats[format.getId()] = format;
+                type = format.getField("common_type");
+                pid = format.getField("common_pid");
+            }
+        }
+        this.commonType = type;
+        this.commonPid = pid;
+
+        this.switchFields = SwitchFields.of(format(RecordSpecification.Type.SCHED_SWITCH));
+        this.wakeupFields = WakeupFields.of(format(RecordSpecification.Type.SCHED_WAKEUP));
+        this.wakeupNewFields = WakeupFields.of(format(RecordSpecification.Type.SCHED_WAKEUP_NEW));
+        this.migrateFields = MigrateFields.of(format(RecordSpecification.Type.SCHED_MIGRATE_TASK));
+        this.functionFields = FunctionFields.of(format(RecordSpecification.Type.FUNCTION));
+        this.graphEntryFields = GraphFields.of(format(RecordSpecification.Type.FUNCTION_ENTRY));
+        this.graphExitFields = GraphFields.of(format(RecordSpecification.Type.FUNCTION_EXIT));
+        this.stackFields = StackFields.of(format(RecordSpecification.Type.KERNEL_STACK));
+    }
+
+    private EventFormat format(RecordSpecification.Type type) {
+        for (int id = 0; id < types.length; id++)
+            if (types[id] == type)
+                return formats[id];
+        return null;
+    }
+
+    private RecordSpecification.Type typeOf(ByteBuffer page, int base) {
+        int id = commonType.getInt(page, base);
+        return id >= 0 && id < types.length ? types[id] : null;
+    }
+
+    void setConstraint(Constraint constraint) {
+        this.constraint = constraint;
+    }
+
+    /*
+    Returns null for events whose type is not handled or out of the constraint, which are not decoded any further.
+    Function entries are, since they may take their exit along
+     */
+    Record decode(CpuBuffer buffer) {
+        if (commonType == null)
+            return null;
+
+        ByteBuffer page = buffer.getPage();
+        int base = buffer.getEventOffset();
+        RecordSpecification.Type type = typeOf(page, base);
+        if (type == null)
+            return null;
+
+        int pid = commonPid.getInt(page, base);
+        boolean accepted = constraint.accepts(type, buffer.getCpu(), pid, buffer.getTimestamp());
+        if (!accepted && type != RecordSpecification.Type.FUNCTION_ENTRY)
+            return null;
+
+        ProcessInfo process = process(pid);
+        Record.Timestamp timestamp = Record.Timestamp.ofNanos(buffer.getTimestamp(), TIMESTAMP_DIGITS);
+        List<StackTraceEntry> stackTrace = List.of();
+        RecordSpecification specification;
+
+        switch (type) {
+            case SCHED_SWITCH:
+                specification = switchFields.decode(this, page, base);
+                break;
+            case SCHED_WAKEUP:
+                specification = wakeupFields.decode(this, type, page, base);
+                break;
+            case SCHED_WAKEUP_NEW:
+                specification = wakeupNewFields.decode(this, type, page, base);
+                break;
+            case SCHED_MIGRATE_TASK:
+                specification = migrateFields.decode(this, page, base);
+                break;
+            case FUNCTION:
+                specification = new RecordSpecification.FunctionSpec(String.format("%s <-- %s",
+                        symbol(functionFields.ip.get(page, base)),
+                        symbol(functionFields.parentIp.get(page, base))));
+                break;
+            case FUNCTION_ENTRY:
+                specification = decodeGraphEntry(buffer, process);
+                break;
+            case FUNCTION_EXIT:
+                specification = new RecordSpecification.FunctionExitSpec(
+                        graphDepth(graphExitFields.depth.getInt(page, base)),
+                        graphExitFields.duration(page, base));
+                break;
+            case KERNEL_STACK:
+                specification = RecordSpecification.KernelStackSpec.INSTANCE;
+                stackTrace = stackFields.decode(page, base, buffer.getEventLength(), datFile.getLongSize(), symbols);
+                break;
+            default:
+                return null;
+        }
+
+        if (!accepted)
+            return null;
+
+        return new SimpleRecord(process, buffer.getCpu(), timestamp, specification, stackTrace);
+    }
+
+    /*
+    As the function_graph plugin does, an entry immediately followed by its own exit is printed as a leaf call
+     */
+    private RecordSpecification decodeGraphEntry(CpuBuffer buffer, ProcessInfo process) {
+        ByteBuffer page = buffer.getPage();
+        int base = buffer.getEventOffset();
+        long function = graphEntryFields.function.get(page, base);
+        int depth = graphEntryFields.depth.getInt(page, base);
+
+        buffer.mark();
+        if (buffer.nextInPage()) {
+            int exitBase = buffer.getEventOffset();
+            if (typeOf(page, exitBase) == RecordSpecification.Type.FUNCTION_EXIT
+                    && commonPid.getInt(page, exitBase) == process.getPid()
+                    && graphExitFields.function.get(page, exitBase) == function
+                    && graphExitFields.depth.getInt(page, exitBase) == depth)
+                return new RecordSpecification.FunctionEntrySpec(graphDepth(depth),
+                        graphExitFields.duration(page, exitBase),
+                        symbol(function),
+                        true);
+        }
+        buffer.reset();
+
+        return new RecordSpecification.FunctionEntrySpec(graphDepth(depth), null, symbol(function), false);
+    }
+
+    /*
+    The text output indents two spaces per level after the "|  " separator, and that is what AsciiTrace counts
+     */
+    private static int graphDepth(int depth) {
+        return 2 + 2 * depth;
+    }
+
+    private ProcessInfo process(int pid) {
+        return processes.computeIfAbsent(pid, p -> {
+            String command = datFile.getCommand(p);
+            if (p == 0)
+                command = "<idle>";
+            else if (command == null)
+                command = "<...>";
+            return processPool.intern(p, command);
+        });
+    }
+
+    /*
+    Process named by a comm field of the event, looked up without building its name
+     */
+    private ProcessInfo process(EventFormat.Field pid, EventFormat.Field comm, ByteBuffer page, int base) {
+        int length = comm.getString(page, base, name);
+        return processTable.intern(pid.getInt(page, base), name, 0, length);
+    }
+
+    private String symbol(long address) {
+        String name = symbols.resolve(address);
+        return name != null ? name : Long.toHexString(address);
+    }
+
+    static char taskState(long state) {
+        state &= TASK_REPORT_MASK;
+        return state == 0 ? 'R' : TASK_STATES.charAt(Long.numberOfTrailingZeros(state));
+    }
+
+    private static class SwitchFields {
+        private final EventFormat.Field previousComm, previousPid, previousPriority, previousState;
+        private final EventFormat.Field nextComm, nextPid, nextPriority;
+
+        private SwitchFields(EventFormat format) {
+            previousComm = format.getField("prev_comm");
+            previousPid = format.getField("prev_pid");
+            previousPriority = format.getField("prev_prio");
+            previousState = format.getField("prev_state");
+            nextComm = format.getField("next_comm");
+            nextPid = format.getField("next_pid");
+            nextPriority = format.getField("next_prio");
+        }
+
+        private static SwitchFields of(EventFormat format) {
+            return format != null ? new SwitchFields(format) : null;
+        }
+
+        private RecordSpecification decode(EventDecoder decoder, ByteBuffer page, int base) {
+            return new RecordSpecification.SchedSwitchSpec(
+                    decoder.process(previousPid, previousComm, page, base),
+                    previousPriority.getInt(page, base),
+                    taskState(previousState.get(page, base)),
+                    decoder.process(nextPid, nextComm, page, base),
+                    nextPriority.getInt(page, base));
+        }
+    }
+
+    private static class WakeupFields {
+        private final EventFormat.Field comm, pid, priority, success, cpu;
+
+        private WakeupFields(EventFormat format) {
+            comm = format.getField("comm");
+            pid = format.getField("pid");
+            priority = format.getField("prio");
+            success = format.getField("success");
+            cpu = format.hasField("target_cpu") ? format.getField("target_cpu") : format.getField("cpu");
+        }
+
+        private static WakeupFields of(EventFormat format) {
+            return format != null ? new WakeupFields(format) : null;
+        }
+
+        private RecordSpecification decode(EventDecoder decoder, RecordSpecification.Type type, ByteBuffer page, int base) {
+            return new RecordSpecification.SchedWakeupFamilySpec(type,
+                    decoder.process(pid, comm, page, base),
+                    priority.getInt(page, base),
+                    success != null ? success.get(page, base) == 1 : null,
+                    cpu.getInt(page, base));
+        }
+    }
+
+    private static class MigrateFields {
+        private final EventFormat.Field comm, pid, priority, originCpu, destinationCpu;
+
+        private MigrateFields(EventFormat format) {
+            comm = format.getField("comm");
+            pid = format.getField("pid");
+            priority = format.getField("prio");
+            originCpu = format.getField("orig_cpu");
+            destinationCpu = format.getField("dest_cpu");
+        }
+
+        private static MigrateFields of(EventFormat format) {
+            return format != null ? new MigrateFields(format) : null;
+        }
+
+        private RecordSpecification decode(EventDecoder decoder, ByteBuffer page, int base) {
+            return new RecordSpecification.SchedMigrateTaskSpec(
+                    decoder.process(pid, comm, page, base),
+                    priority.getInt(page, base),
+                    originCpu.getInt(page, base),
+                    destinationCpu.getInt(page, base));
+        }
+    }
+
+    private static class FunctionFields {
+        private final EventFormat.Field ip, parentIp;
+
+        private FunctionFields(EventFormat format) {
+            ip = format.getField("ip");
+            parentIp = format.getField("parent_ip");
+        }
+
+        private static FunctionFields of(EventFormat format) {
+            return format != null ? new FunctionFields(format) : null;
+        }
+    }
+
+    private static class GraphFields {
+        private final EventFormat.Field function, depth, callTime, returnTime;
+
+        private GraphFields(EventFormat format) {
+            function = format.getField("func");
+            depth = format.getField("depth");
+            callTime = format.getField("calltime");
+            returnTime = format.getField("rettime");
+        }
+
+        private static GraphFields of(EventFormat format) {
+            return format != null ? new GraphFields(format) : null;
+        }
+
+        private Duration duration(ByteBuffer page, int base) {
+            if (callTime == null || returnTime == null)
+                return null;
+
+            long nanoseconds = returnTime.get(page, base) - callTime.get(page, base);
+            String fraction = String.valueOf(nanoseconds % 1000);
+            return new Duration(nanoseconds / 1000 + "." + "0".repeat(3 - fraction.length()) + fraction, "us");
+        }
+    }
+
+    private static class StackFields {
+        private final EventFormat.Field caller;
+
+        private StackFields(EventFormat format) {
+            caller = format.getField("caller");
+        }
+
+        private static StackFields of(EventFormat format) {
+            return format != null ? new StackFields(format) : null;
+        }
+
+        private List<StackTraceEntry> decode(ByteBuffer page, int base, int length, int longSize, KernelSymbols symbols) {
+            LinkedList<StackTraceEntry> stackTrace = new LinkedList<>();
+
+            for (int index = base + caller.getOffset(); index + longSize <= base + length; index += longSize) {
+                long address = longSize == 8 ? page.getLong(index) : page.getInt(index) & 0xFFFFFFFFL;
+                if (address == 0 || address == -1 || (longSize == 4 && address == 0xFFFFFFFFL))
+                    break;
+
+                String name = symbols.resolve(address);
+                stackTrace.add(name != null ?
+                        new StackTraceEntry(name, Long.toHexString(address)) :
+                        new StackTraceEntry(Long.toHexString(address)));
+            }
+
+            return stackTrace;
+        }
+    }
+}
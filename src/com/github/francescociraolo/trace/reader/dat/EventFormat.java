@@ -0,0 +1,191 @@
+package com.github.francescociraolo.trace.reader.dat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class EventFormat {
+
+    private final String system;
+    private final String name;
+    private final int id;
+    private final Map<String, Field> fields;
+
+    private EventFormat(String system, String name, int id, Map<String, Field> fields) {
+        this.system = system;
+        this.name = name;
+        this.id = id;
+        this.fields = fields;
+    }
+
+    public String getSystem() {
+        return system;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Field getField(String name) {
+        return fields.get(name);
+    }
+
+    public boolean hasField(String name) {
+        return fields.containsKey(name);
+    }
+
+    static EventFormat parse(String system, String text) {
+        String name = null;
+        int id = -1;
+
+        for (String line : text.split("\n")) {
+            line = line.strip();
+            if (line.startsWith("name:"))
+                name = line.substring(5).strip();
+            else if (line.startsWith("ID:"))
+                id = Integer.parseInt(line.substring(3).strip());
+        }
+
+        if (name == null || id < 0)
+            throw new RuntimeException("Invalid event format in system " + system);
+
+        return new EventFormat(system, name, id, parseFields(text));
+    }
+
+    /*
+    Same "field:<declaration>; offset:<n>; size:<n>; signed:<n>;" lines used by both the event formats and the
+    header_page description
+     */
+    static Map<String, Field> parseFields(String text) {
+        Map<String, Field> fields = new HashMap<>();
+
+        for (String line : text.split("\n")) {
+            line = line.strip();
+            if (!line.startsWith("field:"))
+                continue;
+
+            String declaration = null;
+            int offset = -1, size = -1;
+            boolean signed = false;
+
+            for (String part : line.split(";")) {
+                part = part.strip();
+                if (part.startsWith("field:"))
+                    declaration = part.substring(6).strip();
+                else if (part.startsWith("offset:"))
+                    offset = Integer.parseInt(part.substring(7).strip());
+                else if (part.startsWith("size:"))
+                    size = Integer.parseInt(part.substring(5).strip());
+                else if (part.startsWith("signed:"))
+                    signed = part.substring(7).strip().equals("1");
+            }
+
+            if (declaration == null || offset < 0 || size < 0)
+                continue;
+
+            String fieldName = declaration.substring(declaration.lastIndexOf(' ') + 1);
+            int bracket = fieldName.indexOf('[');
+            boolean array = bracket >= 0;
+            if (array)
+                fieldName = fieldName.substring(0, bracket);
+
+            fields.put(fieldName, new Field(fieldName, offset, size, signed, array, declaration.startsWith("__data_loc")));
+        }
+
+        return fields;
+    }
+
+    public static class Field {
+
+        /* dynamic strings store their length in 16 bits */
+        public static final int MAX_STRING_LENGTH = 0xFFFF;
+
+        private final String name;
+        private final int offset;
+        private final int size;
+        private final boolean signed;
+        private final boolean array;
+        private final boolean dynamic;
+
+        private Field(String name, int offset, int size, boolean signed, boolean array, boolean dynamic) {
+            this.name = name;
+            this.offset = offset;
+            this.size = size;
+            this.signed = signed;
+            this.array = array;
+            this.dynamic = dynamic;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public boolean isArray() {
+            return array;
+        }
+
+        public long get(ByteBuffer buffer, int base) {
+            int index = base + offset;
+            switch (size) {
+                case 1:
+                    return signed ? buffer.get(index) : buffer.get(index) & 0xFFL;
+                case 2:
+                    return signed ? buffer.getShort(index) : buffer.getShort(index) & 0xFFFFL;
+                case 4:
+                    return signed ? buffer.getInt(index) : buffer.getInt(index) & 0xFFFFFFFFL;
+                case 8:
+                    return buffer.getLong(index);
+                default:
+                    throw new RuntimeException(String.format("Unsupported size %d for field %s", size, name));
+            }
+        }
+
+        public int getInt(ByteBuffer buffer, int base) {
+            return (int) get(buffer, base);
+        }
+
+        /*
+        Fixed size char arrays (comm fields) are NUL terminated only when shorter than the array, dynamic strings
+        store their own offset and length in the field
+         */
+        public String getString(ByteBuffer buffer, int base) {
+            int from = stringStart(buffer, base);
+            byte[] bytes = new byte[stringEnd(buffer, base, from) - from];
+            buffer.get(from, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        /*
+        Copies the string in the destination array, which must hold MAX_STRING_LENGTH bytes, returning its length
+         */
+        public int getString(ByteBuffer buffer, int base, byte[] destination) {
+            int from = stringStart(buffer, base), length = stringEnd(buffer, base, from) - from;
+            buffer.get(from, destination, 0, length);
+            return length;
+        }
+
+        private int stringStart(ByteBuffer buffer, int base) {
+            return dynamic ? base + (buffer.getInt(base + offset) & 0xFFFF) : base + offset;
+        }
+
+        private int stringEnd(ByteBuffer buffer, int base, int from) {
+            int length = dynamic ? buffer.getInt(base + offset) >>> 16 : size, end = from;
+            while (end < from + length && buffer.get(end) != 0)
+                end++;
+            return end;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.francescociraolo.trace.reader.dat;
+
+import com.github.francescociraolo.datastructures.Pair;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class KernelSymbols {
+
+    private final long[] addresses;
+    private final String[] names;
+
+    private KernelSymbols(long[] addresses, String[] names) {
+        this.addresses = addresses;
+        this.names = names;
+    }
+
+    /*
+    Returns the name of the symbol containing the address, null if it is before any known symbol
+     */
+    public String resolve(long address) {
+        int low = 0, high = addresses.length - 1, found = -1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(addresses[middle], address) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else
+                high = middle - 1;
+        }
+
+        return found >= 0 ? names[found] : null;
+    }
+
+    static KernelSymbols parse(String kallsyms) {
+        List<Pair<Long, String>> entries = new ArrayList<>();
+
+        for (String line : kallsyms.split("\n")) {
+            String[] tokens = line.strip().split("\\s+");
+            if (tokens.length < 3)
+                continue;
+
+            long address = Long.parseUnsignedLong(tokens[0], 16);
+            if (address != 0)
+                entries.add(new Pair<>(address, tokens[2]));
+        }
+
+        entries.sort(Comparator.comparing(Pair::getFirst, Long::compareUnsigned));
+
+        long[] addresses = new long[entries.size()];
+        String[] names = new String[entries.size()];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = entries.get(i).getFirst();
+            names[i] = entries.get(i).getSecond();
+        }
+
+        return new KernelSymbols(addresses, names);
+    }
+
+    static KernelSymbols empty() {
+        return new KernelSymbols(new long[0], new String[0]);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d kernel symbols", addresses.length);
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.francescociraolo.trace.store;
+
+import java.util.Arrays;
+
+/*
+Growable columns of primitive values, allocated in fixed size chunks so that growing never copies what is already
+stored
+ */
+class Columns {
+
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int INITIAL_CHUNKS = 16;
+
+    private Columns() {
+    }
+
+    static class Longs {
+        private long[][] chunks = new long[INITIAL_CHUNKS][];
+        private int size;
+
+        void add(long value) {
+            int chunk = size >>> CHUNK_BITS;
+            if ((size & CHUNK_MASK) == 0) {
+                if (chunk == chunks.length)
+                    chunks = Arrays.copyOf(chunks, chunks.length * 2);
+                chunks[chunk] = new long[CHUNK_SIZE];
+            }
+            chunks[chunk][size++ & CHUNK_MASK] = value;
+        }
+
+        long get(int index) {
+            return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    static class Ints {
+        private int[][] chunks = new int[INITIAL_CHUNKS][];
+        private int size;
+
+        /*
+        Returns the index of the value
+         */
+        int add(int value) {
+            int chunk = size >>> CHUNK_BITS;
+            if ((size & CHUNK_MASK) == 0) {
+                if (chunk == chunks.length)
+                    chunks = Arrays.copyOf(chunks, chunks.length * 2);
+                chunks[chunk] = new int[CHUNK_SIZE];
+            }
+            chunks[chunk][size & CHUNK_MASK] = value;
+            return size++;
+        }
+
+        int get(int index) {
+            return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    static class Bytes {
+        private byte[][] chunks = new byte[INITIAL_CHUNKS][];
+        private int size;
+
+        void add(byte value) {
+            int chunk = size >>> CHUNK_BITS;
+            if ((size & CHUNK_MASK) == 0) {
+                if (chunk == chunks.length)
+                    chunks = Arrays.copyOf(chunks, chunks.length * 2);
+                chunks[chunk] = new byte[CHUNK_SIZE];
+            }
+            chunks[chunk][size++ & CHUNK_MASK] = value;
+        }
+
+        byte get(int index) {
+            return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    static class Objects<T> {
+        private Object[][] chunks = new Object[INITIAL_CHUNKS][];
+        private int size;
+
+        int add(T value) {
+            int chunk = size >>> CHUNK_BITS;
+            if ((size & CHUNK_MASK) == 0) {
+                if (chunk == chunks.length)
+                    chunks = Arrays.copyOf(chunks, chunks.length * 2);
+                chunks[chunk] = new Object[CHUNK_SIZE];
+            }
+            chunks[chunk][size & CHUNK_MASK] = value;
+            return size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int index) {
+            return (T) chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
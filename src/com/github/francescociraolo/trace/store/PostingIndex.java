@@ -0,0 +1,82 @@
+package com.github.francescociraolo.trace.store;
+
+import com.github.francescociraolo.trace.RecordSpecification;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Inverted index of a RecordStore: the ordinals of the records of every pid, of the records whose specification
+refers to a pid (see RecordSpecification.isPidRelated) and of every type
+ */
+public class PostingIndex {
+
+    private static final RecordSpecification.Type[] TYPES = RecordSpecification.Type.values();
+
+    private final int size;
+    private final Map<Integer, PostingList> pids;
+    private final Map<Integer, PostingList> relatedPids;
+    private final PostingList[] types;
+
+    private PostingIndex(int size,
+                         Map<Integer, PostingList> pids,
+                         Map<Integer, PostingList> relatedPids,
+                         PostingList[] types) {
+        this.size = size;
+        this.pids = pids;
+        this.relatedPids = relatedPids;
+        this.types = types;
+    }
+
+    static PostingIndex build(RecordStore store) {
+        var pids = new HashMap<Integer, PostingList.Builder>();
+        var relatedPids = new HashMap<Integer, PostingList.Builder>();
+        var types = new PostingList.Builder[TYPES.length];
+        for (int i = 0; i < types.length; i++)
+            types[i] = new PostingList.Builder();
+
+        var related = new int[RecordStore.MAX_RELATED_PIDS];
+        for (int i = 0; i < store.size(); i++) {
+            pids.computeIfAbsent(store.getPid(i), pid -> new PostingList.Builder()).add(i);
+            types[store.getType(i).ordinal()].add(i);
+            for (int j = 0, count = store.getRelatedPids(i, related); j < count; j++)
+                relatedPids.computeIfAbsent(related[j], pid -> new PostingList.Builder()).add(i);
+        }
+
+        var typeLists = new PostingList[types.length];
+        for (int i = 0; i < types.length; i++)
+            typeLists[i] = types[i].build();
+        return new PostingIndex(store.size(), build(pids), build(relatedPids), typeLists);
+    }
+
+    private static Map<Integer, PostingList> build(Map<Integer, PostingList.Builder> builders) {
+        var lists = new HashMap<Integer, PostingList>(builders.size() * 2);
+        builders.forEach((key, builder) -> lists.put(key, builder.build()));
+        return lists;
+    }
+
+    /*
+    Records indexed
+     */
+    public int size() {
+        return size;
+    }
+
+    /*
+    Records of the process
+     */
+    public PostingList ofPid(int pid) {
+        return pids.getOrDefault(pid, PostingList.EMPTY);
+    }
+
+    /*
+    Records whose specification refers to the process
+     */
+    public PostingList ofRelatedPid(int pid) {
+        return relatedPids.getOrDefault(pid, PostingList.EMPTY);
+    }
+
+    public PostingList ofType(RecordSpecification.Type type) {
+        return types[type.ordinal()];
+    }
+}
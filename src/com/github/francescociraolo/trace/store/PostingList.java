@@ -0,0 +1,188 @@
+package com.github.francescociraolo.trace.store;
+
+import java.util.Arrays;
+
+/*
+Sorted set of record ordinals, stored as varint gaps. Every SKIP_INTERVAL ordinals a skip entry remembers value and
+position, so that intersections can jump over the parts of the longer list that cannot match
+ */
+public class PostingList {
+
+    public static final PostingList EMPTY = new Builder().build();
+
+    private static final int SKIP_INTERVAL = 64;
+
+    private final byte[] bytes;
+    private final int size;
+    private final int[] skipValues;
+    private final int[] skipOffsets;
+
+    private PostingList(byte[] bytes, int size, int[] skipValues, int[] skipOffsets) {
+        this.bytes = bytes;
+        this.size = size;
+        this.skipValues = skipValues;
+        this.skipOffsets = skipOffsets;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Iterator iterator() {
+        return new Iterator();
+    }
+
+    public static PostingList union(PostingList first, PostingList second) {
+        if (first.isEmpty())
+            return second;
+        if (second.isEmpty())
+            return first;
+
+        var builder = new Builder();
+        var firstIterator = first.iterator();
+        var secondIterator = second.iterator();
+        int a = firstIterator.next(), b = secondIterator.next();
+
+        while (a >= 0 || b >= 0)
+            if (b < 0 || (a >= 0 && a < b)) {
+                builder.add(a);
+                a = firstIterator.next();
+            } else {
+                builder.add(b);
+                if (a == b)
+                    a = firstIterator.next();
+                b = secondIterator.next();
+            }
+
+        return builder.build();
+    }
+
+    /*
+    Walks the shorter list, skipping through the longer one
+     */
+    public static PostingList intersection(PostingList first, PostingList second) {
+        if (first.size > second.size)
+            return intersection(second, first);
+
+        var builder = new Builder();
+        var longer = second.iterator();
+        var shorter = first.iterator();
+
+        for (int value = shorter.next(); value >= 0; value = shorter.next()) {
+            int found = longer.advanceTo(value);
+            if (found < 0)
+                break;
+            if (found == value)
+                builder.add(value);
+        }
+
+        return builder.build();
+    }
+
+    public class Iterator {
+
+        private int offset;
+        private int index;
+        private int value = -1;
+
+        private Iterator() {
+        }
+
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        /*
+        Next ordinal, -1 at the end
+         */
+        public int next() {
+            if (index == size)
+                return -1;
+
+            int gap = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[offset++];
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+
+            index++;
+            return value += gap + 1;
+        }
+
+        /*
+        First ordinal from the given one on, -1 if there is none. The current one counts, so that advancing twice
+        to the same target returns the same ordinal
+         */
+        public int advanceTo(int target) {
+            if (index > 0 && value >= target)
+                return value;
+
+            int skip = Arrays.binarySearch(skipValues, target);
+            skip = (skip < 0 ? -skip - 1 : skip) - 1;
+            if (skip >= 0 && (skip + 1) * SKIP_INTERVAL > index) {
+                index = (skip + 1) * SKIP_INTERVAL;
+                offset = skipOffsets[skip];
+                value = skipValues[skip];
+            }
+
+            int next = index > 0 && value >= target ? value : next();
+            while (next >= 0 && next < target)
+                next = next();
+            return next;
+        }
+    }
+
+    /*
+    Takes ordinals in increasing order, repeating the last one has no effect
+     */
+    public static class Builder {
+
+        private byte[] bytes = new byte[16];
+        private int length;
+        private int size;
+        private int last = -1;
+        private int[] skipValues = new int[0];
+        private int[] skipOffsets = new int[0];
+        private int skips;
+
+        public void add(int ordinal) {
+            if (ordinal == last)
+                return;
+            if (ordinal < last)
+                throw new IllegalArgumentException("Ordinals must be added in increasing order");
+
+            if (length + 5 > bytes.length)
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+
+            int gap = ordinal - last - 1;
+            while ((gap & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            bytes[length++] = (byte) gap;
+
+            last = ordinal;
+            if (++size % SKIP_INTERVAL == 0) {
+                if (skips == skipValues.length) {
+                    skipValues = Arrays.copyOf(skipValues, Math.max(4, skips * 2));
+                    skipOffsets = Arrays.copyOf(skipOffsets, Math.max(4, skips * 2));
+                }
+                skipValues[skips] = ordinal;
+                skipOffsets[skips++] = length;
+            }
+        }
+
+        public PostingList build() {
+            return new PostingList(Arrays.copyOf(bytes, length),
+                    size,
+                    Arrays.copyOf(skipValues, skips),
+                    Arrays.copyOf(skipOffsets, skips));
+        }
+    }
+}
@@ -0,0 +1,710 @@
+package com.github.francescociraolo.trace.store;
+
+import com.github.francescociraolo.trace.ProcessInfo;
+import com.github.francescociraolo.trace.Record;
+import com.github.francescociraolo.trace.RecordSpecification;
+import com.github.francescociraolo.trace.RecordSpecification.SchedMigrateTaskSpec;
+import com.github.francescociraolo.trace.RecordSpecification.SchedSwitchSpec;
+import com.github.francescociraolo.trace.RecordSpecification.SchedWakeupFamilySpec;
+import com.github.francescociraolo.trace.SimpleRecord;
+import com.github.francescociraolo.trace.StackTraceEntry;
+import com.github.francescociraolo.trace.filter.RecordFilter;
+import com.github.francescociraolo.trace.reader.Constraint;
+import com.github.francescociraolo.trace.reader.Trace;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/*
+Holds a parsed trace as parallel columns of primitive values, one entry per record, instead of a graph of Record
+objects. Processes are stored once and referred by their index (task), the fields of sched_switch, sched_wakeup(_new)
+and sched_migrate_task live in columns of their own; any other record keeps its specification and stack trace as
+objects. Records are built back only when asked for, a Cursor can walk the store without building them at all
+ */
+public class RecordStore {
+
+    private static final RecordSpecification.Type[] TYPES = RecordSpecification.Type.values();
+
+    /* success of wakeups without the field */
+    static final byte NO_SUCCESS = -1;
+
+    /* processes a specification can refer to, the two of a sched_switch */
+    static final int MAX_RELATED_PIDS = 2;
+
+    private final int cpus;
+
+    private final Columns.Longs timestamps;
+    private final Columns.Bytes digits;
+    private final Columns.Ints cores;
+    private final Columns.Ints tasks;
+    private final Columns.Bytes types;
+    /* index in the side columns of the type, negative (-1 - index) for the generic ones */
+    private final Columns.Ints details;
+
+    private final List<ProcessInfo> processes;
+    private final Map<ProcessInfo, Integer> processTasks;
+
+    private final SwitchColumns switches;
+    private final WakeupColumns wakeups;
+    private final MigrateColumns migrations;
+    private final GenericColumns generics;
+
+    private boolean complete;
+    /* whether timestamps never decrease, so that a record past a time range ends the records in it */
+    private boolean ordered = true;
+
+    private SeekIndex seekIndex;
+    private int seekIndexSize;
+    private PostingIndex postingIndex;
+
+    public RecordStore(int cpus) {
+        this.cpus = cpus;
+        this.timestamps = new Columns.Longs();
+        this.digits = new Columns.Bytes();
+        this.cores = new Columns.Ints();
+        this.tasks = new Columns.Ints();
+        this.types = new Columns.Bytes();
+        this.details = new Columns.Ints();
+        this.processes = new ArrayList<>();
+        this.processTasks = new HashMap<>();
+        this.switches = new SwitchColumns();
+        this.wakeups = new WakeupColumns();
+        this.migrations = new MigrateColumns();
+        this.generics = new GenericColumns();
+    }
+
+    /*
+    Reads the whole trace
+     */
+    public static RecordStore load(Trace trace) throws IOException {
+        var store = new RecordStore(trace.getCpusCount());
+        store.recording(trace).parseAll();
+        return store;
+    }
+
+    public void add(Record record) {
+        var timestamp = record.getTimestamp();
+        var specification = record.getSpecification();
+        long nanos = timestamp.getNanos();
+        int digits = timestamp.getDigits(), core = record.getCore(), task = task(record.getProcess());
+
+        if (!record.getStackTrace().isEmpty())
+            addGeneric(nanos, digits, core, task, specification, record.getStackTrace());
+        else if (specification instanceof SchedSwitchSpec) {
+            var switchSpec = (SchedSwitchSpec) specification;
+            addSwitch(nanos, digits, core, task,
+                    task(switchSpec.getPreviousProcess()),
+                    switchSpec.getPreviousPriority(),
+                    switchSpec.getPreviousState(),
+                    task(switchSpec.getNextProcess()),
+                    switchSpec.getNextPriority());
+        } else if (specification instanceof SchedWakeupFamilySpec) {
+            var wakeupSpec = (SchedWakeupFamilySpec) specification;
+            var success = wakeupSpec.isSuccess();
+            addWakeup(nanos, digits, core, task, wakeupSpec.getType(),
+                    task(wakeupSpec.getWakingProcess()),
+                    wakeupSpec.getPriority(),
+                    success == null ? NO_SUCCESS : (byte) (success ? 1 : 0),
+                    wakeupSpec.getDestinationCpu());
+        } else if (specification instanceof SchedMigrateTaskSpec) {
+            var migrateSpec = (SchedMigrateTaskSpec) specification;
+            addMigration(nanos, digits, core, task,
+                    task(migrateSpec.getProcess()),
+                    migrateSpec.getPriority(),
+                    migrateSpec.getSourceCpu(),
+                    migrateSpec.getDestinationCpu());
+        } else
+            addGeneric(nanos, digits, core, task, specification, record.getStackTrace());
+    }
+
+    /*
+    The add methods below take processes as task indexes, see task(ProcessInfo)
+     */
+    void addSwitch(long nanos, int digits, int core, int task,
+                   int previousTask, int previousPriority, char previousState, int nextTask, int nextPriority) {
+        addCommon(nanos, digits, core, task, RecordSpecification.Type.SCHED_SWITCH);
+        details.add(switches.add(previousTask, previousPriority, previousState, nextTask, nextPriority));
+    }
+
+    /* success is NO_SUCCESS, 0 or 1 */
+    void addWakeup(long nanos, int digits, int core, int task, RecordSpecification.Type type,
+                   int wakingTask, int priority, byte success, int cpu) {
+        addCommon(nanos, digits, core, task, type);
+        details.add(wakeups.add(wakingTask, priority, success, cpu));
+    }
+
+    void addMigration(long nanos, int digits, int core, int task,
+                      int migratingTask, int priority, int origin, int destination) {
+        addCommon(nanos, digits, core, task, RecordSpecification.Type.SCHED_MIGRATE_TASK);
+        details.add(migrations.add(migratingTask, priority, origin, destination));
+    }
+
+    void addGeneric(long nanos, int digits, int core, int task,
+                    RecordSpecification specification, List<StackTraceEntry> stackTrace) {
+        addCommon(nanos, digits, core, task, specification.getType());
+        details.add(-1 - generics.add(specification, stackTrace));
+    }
+
+    private void addCommon(long nanos, int digits, int core, int task, RecordSpecification.Type type) {
+        if (ordered && timestamps.size() > 0 && nanos < timestamps.get(timestamps.size() - 1))
+            ordered = false;
+        timestamps.add(nanos);
+        this.digits.add((byte) digits);
+        cores.add(core);
+        tasks.add(task);
+        types.add((byte) type.ordinal());
+    }
+
+    /*
+    Index of the process, added to the table the first time it is met
+     */
+    int task(ProcessInfo process) {
+        var task = processTasks.get(process);
+        if (task == null) {
+            task = processes.size();
+            processes.add(process);
+            processTasks.put(process, task);
+        }
+        return task;
+    }
+
+    /*
+    Stores every record read through the returned trace
+     */
+    public Trace recording(Trace trace) {
+        return recording(trace, store -> {});
+    }
+
+    /*
+    As recording(Trace), calling back once the whole trace has been stored
+     */
+    public Trace recording(Trace trace, Consumer<RecordStore> onComplete) {
+        return new RecordingTrace(trace, onComplete);
+    }
+
+    /*
+    Whether the trace it was recording has been read until its end
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    void markComplete() {
+        complete = true;
+    }
+
+    /*
+    Built on first use, and again if records have been added since
+     */
+    SeekIndex getSeekIndex() {
+        if (seekIndex == null || seekIndexSize != size())
+            setSeekIndex(SeekIndex.build(this));
+        return seekIndex;
+    }
+
+    void setSeekIndex(SeekIndex seekIndex) {
+        this.seekIndex = seekIndex;
+        this.seekIndexSize = size();
+    }
+
+    /*
+    Built on first use, and again if records have been added since
+     */
+    public PostingIndex getPostingIndex() {
+        if (postingIndex == null || postingIndex.size() != size())
+            postingIndex = PostingIndex.build(this);
+        return postingIndex;
+    }
+
+    public int size() {
+        return timestamps.size();
+    }
+
+    public int getCpusCount() {
+        return cpus;
+    }
+
+    public int getTasksCount() {
+        return processes.size();
+    }
+
+    public ProcessInfo getTaskProcess(int task) {
+        return processes.get(task);
+    }
+
+    public long getTimestampNanos(int index) {
+        return timestamps.get(index);
+    }
+
+    public Record.Timestamp getTimestamp(int index) {
+        int digits = this.digits.get(index);
+        return digits < 0 ?
+                new Record.Timestamp(timestamps.get(index) / 1e9) :
+                Record.Timestamp.ofNanos(timestamps.get(index), digits);
+    }
+
+    public int getCore(int index) {
+        return cores.get(index);
+    }
+
+    public int getTask(int index) {
+        return tasks.get(index);
+    }
+
+    public int getPid(int index) {
+        return processes.get(tasks.get(index)).getPid();
+    }
+
+    public ProcessInfo getProcess(int index) {
+        return processes.get(tasks.get(index));
+    }
+
+    public RecordSpecification.Type getType(int index) {
+        return TYPES[types.get(index)];
+    }
+
+    public RecordSpecification getSpecification(int index) {
+        var type = getType(index);
+        int detail = details.get(index);
+
+        if (detail < 0)
+            return generics.getSpecification(-1 - detail);
+
+        switch (type) {
+            case SCHED_SWITCH:
+                return switches.get(detail);
+            case SCHED_WAKEUP:
+            case SCHED_WAKEUP_NEW:
+                return wakeups.get(type, detail);
+            case SCHED_MIGRATE_TASK:
+                return migrations.get(detail);
+            default:
+                throw new IllegalStateException("No columns for " + type);
+        }
+    }
+
+    public List<StackTraceEntry> getStackTrace(int index) {
+        int detail = details.get(index);
+        return detail < 0 ? generics.getStackTrace(-1 - detail) : List.of();
+    }
+
+    /*
+    Fills the array with the pids the specification of the record refers to, returns how many they are
+     */
+    int getRelatedPids(int index, int[] pids) {
+        int detail = details.get(index);
+
+        if (detail >= 0)
+            switch (getType(index)) {
+                case SCHED_SWITCH:
+                    pids[0] = processes.get(switches.previousTasks.get(detail)).getPid();
+                    pids[1] = processes.get(switches.nextTasks.get(detail)).getPid();
+                    return 2;
+                case SCHED_WAKEUP:
+                case SCHED_WAKEUP_NEW:
+                    pids[0] = processes.get(wakeups.tasks.get(detail)).getPid();
+                    return 1;
+                case SCHED_MIGRATE_TASK:
+                    pids[0] = processes.get(migrations.tasks.get(detail)).getPid();
+                    return 1;
+                default:
+                    return 0;
+            }
+
+        var specification = generics.getSpecification(-1 - detail);
+        if (specification instanceof SchedSwitchSpec) {
+            pids[0] = ((SchedSwitchSpec) specification).getPreviousProcess().getPid();
+            pids[1] = ((SchedSwitchSpec) specification).getNextProcess().getPid();
+            return 2;
+        } else if (specification instanceof SchedWakeupFamilySpec) {
+            pids[0] = ((SchedWakeupFamilySpec) specification).getWakingProcess().getPid();
+            return 1;
+        } else if (specification instanceof SchedMigrateTaskSpec) {
+            pids[0] = ((SchedMigrateTaskSpec) specification).getPid();
+            return 1;
+        }
+        return 0;
+    }
+
+    public Record getRecord(int index) {
+        return new SimpleRecord(getProcess(index),
+                getCore(index),
+                getTimestamp(index),
+                getSpecification(index),
+                getStackTrace(index));
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /*
+    Walks the store from the beginning: advance() and the getters of the current record allocate nothing, next()
+    builds the record as any other trace would return it. Seeks go through the SeekIndex of the store
+     */
+    public class Cursor extends Trace {
+
+        private int index = -1;
+        /* the last record returned by next() or the one before a seek */
+        private int returned = -1;
+        private Constraint constraint = Constraint.NONE;
+
+        /*
+        In an ordered store the records past the time range of the constraint are left unread, a wider constraint
+        pushed later reads them again
+         */
+        @Override
+        public boolean hasNext() {
+            return index + 1 < size()
+                    && !(ordered && constraint.isPast(RecordStore.this.getTimestampNanos(index + 1)));
+        }
+
+        public boolean advance() {
+            if (!hasNext())
+                return false;
+            index++;
+            return true;
+        }
+
+        /*
+        Records out of the constraint are skipped on the columns, without being built; the cursor stops before the
+        first one past its time range when the store is ordered. Null when none is left
+         */
+        @Override
+        public Record next() throws IOException {
+            if (!advance()) throw new EOFException();
+
+            if (constraint != Constraint.NONE)
+                while (!accepts(constraint, index))
+                    if (!advance())
+                        return null;
+
+            returned = index;
+            return getRecord(index);
+        }
+
+        /*
+        Seeks the start of the time range when it comes after the next record. A constraint accepting records the
+        previous one did not goes back to the last record returned, the ones skipped since then are read again
+         */
+        @Override
+        public void pushDown(Constraint constraint) {
+            var previous = this.constraint;
+            this.constraint = constraint.isNone() ? Constraint.NONE : constraint;
+            if (!previous.contains(constraint))
+                index = returned;
+            if (index + 1 < size() && RecordStore.this.getTimestampNanos(index + 1) < constraint.getFrom())
+                index = Math.max(index, getSeekIndex().seek(RecordStore.this, constraint.getFrom()) - 1);
+        }
+
+        @Override
+        public int getCpusCount() {
+            return cpus;
+        }
+
+        @Override
+        public boolean isSeekable() {
+            return true;
+        }
+
+        @Override
+        public void seek(Record.Timestamp timestamp) {
+            index = returned = getSeekIndex().seek(RecordStore.this, timestamp.getNanos()) - 1;
+        }
+
+        @Override
+        public void seek(int core, Record.Timestamp timestamp) {
+            index = returned = getSeekIndex().seek(RecordStore.this, core, timestamp.getNanos()) - 1;
+        }
+
+        /*
+        Filters able to name their candidates in the PostingIndex only build and test the records listed there
+         */
+        @Override
+        public Trace filtered(Predicate<Record> filter) throws IOException {
+            if (filter instanceof RecordFilter) {
+                var candidates = ((RecordFilter) filter).candidates(getPostingIndex());
+                if (candidates != null)
+                    return new FilteredCursor(this, candidates, filter);
+            }
+            return super.filtered(filter);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getTimestampNanos() {
+            return RecordStore.this.getTimestampNanos(index);
+        }
+
+        public int getCore() {
+            return RecordStore.this.getCore(index);
+        }
+
+        public int getTask() {
+            return RecordStore.this.getTask(index);
+        }
+
+        public int getPid() {
+            return RecordStore.this.getPid(index);
+        }
+
+        public RecordSpecification.Type getType() {
+            return RecordStore.this.getType(index);
+        }
+    }
+
+    private boolean accepts(Constraint constraint, int index) {
+        return constraint.accepts(getType(index), getCore(index), getPid(index), getTimestampNanos(index));
+    }
+
+    /*
+    Moves the cursor it comes from, as a FilteredTrace reading it would
+     */
+    private class FilteredCursor extends Trace {
+
+        private final Cursor cursor;
+        private final PostingList candidates;
+        private final Predicate<Record> filter;
+        private final Constraint constraint;
+
+        private PostingList.Iterator iterator;
+        private int next;
+
+        private FilteredCursor(Cursor cursor, PostingList candidates, Predicate<Record> filter) {
+            this.cursor = cursor;
+            this.candidates = candidates;
+            this.filter = filter;
+            this.constraint = filter instanceof RecordFilter ? ((RecordFilter) filter).constraint() : Constraint.NONE;
+            moveTo(cursor.index + 1);
+        }
+
+        /*
+        Candidates before the time range of the constraint are skipped through the seek index
+         */
+        private void moveTo(int ordinal) {
+            if (ordinal < size() && getTimestampNanos(ordinal) < constraint.getFrom())
+                ordinal = Math.max(ordinal, getSeekIndex().seek(RecordStore.this, constraint.getFrom()));
+            iterator = candidates.iterator();
+            next = iterator.advanceTo(ordinal);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public Record next() throws IOException {
+            if (!hasNext()) throw new EOFException();
+
+            Record record = null;
+            while (record == null && next >= 0) {
+                if (ordered && constraint.isPast(getTimestampNanos(next))) {
+                    next = -1;
+                    break;
+                }
+                cursor.index = next;
+                if (accepts(constraint, next)) {
+                    record = getRecord(next);
+                    if (!filter.test(record))
+                        record = null;
+                }
+                next = iterator.next();
+            }
+            if (next < 0)
+                cursor.index = size() - 1;
+            return record;
+        }
+
+        @Override
+        public int getCpusCount() {
+            return cpus;
+        }
+
+        @Override
+        public boolean isSeekable() {
+            return true;
+        }
+
+        @Override
+        public void seek(Record.Timestamp timestamp) {
+            cursor.seek(timestamp);
+            moveTo(cursor.index + 1);
+        }
+
+        @Override
+        public void seek(int core, Record.Timestamp timestamp) {
+            cursor.seek(core, timestamp);
+            moveTo(cursor.index + 1);
+        }
+    }
+
+    /*
+    A constraint pushed down is not passed on, the whole trace is stored, but the records out of it are not returned.
+    As on a cursor, a wider constraint returns the records stored after the last one returned, read back from the store
+     */
+    private class RecordingTrace extends Trace {
+
+        private final Trace trace;
+        private final Consumer<RecordStore> onComplete;
+        private Constraint constraint = Constraint.NONE;
+        /* store index of the last record returned and of the next record to return, size() once all are read */
+        private int returned;
+        private int replay;
+
+        private RecordingTrace(Trace trace, Consumer<RecordStore> onComplete) {
+            this.trace = trace;
+            this.onComplete = onComplete;
+            this.returned = size() - 1;
+            this.replay = size();
+            checkComplete();
+        }
+
+        private void checkComplete() {
+            if (!complete && !trace.hasNext()) {
+                complete = true;
+                onComplete.accept(RecordStore.this);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return replay < size() || trace.hasNext();
+        }
+
+        @Override
+        public Record next() throws IOException {
+            int index = replay;
+            Record record;
+            if (index < size()) {
+                replay++;
+                record = accepts(constraint, index) ? getRecord(index) : null;
+            } else {
+                record = trace.next();
+                if (record != null) {
+                    add(record);
+                    replay++;
+                    if (!constraint.accepts(record))
+                        record = null;
+                }
+                checkComplete();
+            }
+
+            if (record != null)
+                returned = index;
+            return record;
+        }
+
+        @Override
+        public void pushDown(Constraint constraint) {
+            var previous = this.constraint;
+            this.constraint = constraint.isNone() ? Constraint.NONE : constraint;
+            if (!previous.contains(constraint))
+                replay = returned + 1;
+        }
+
+        @Override
+        public int getCpusCount() {
+            return trace.getCpusCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            trace.close();
+        }
+    }
+
+    private class SwitchColumns {
+        private final Columns.Ints previousTasks = new Columns.Ints();
+        private final Columns.Ints previousPriorities = new Columns.Ints();
+        private final Columns.Bytes previousStates = new Columns.Bytes();
+        private final Columns.Ints nextTasks = new Columns.Ints();
+        private final Columns.Ints nextPriorities = new Columns.Ints();
+
+        private int add(int previousTask, int previousPriority, char previousState, int nextTask, int nextPriority) {
+            previousTasks.add(previousTask);
+            previousPriorities.add(previousPriority);
+            previousStates.add((byte) previousState);
+            nextTasks.add(nextTask);
+            return nextPriorities.add(nextPriority);
+        }
+
+        private SchedSwitchSpec get(int index) {
+            return new SchedSwitchSpec(processes.get(previousTasks.get(index)),
+                    previousPriorities.get(index),
+                    (char) (previousStates.get(index) & 0xFF),
+                    processes.get(nextTasks.get(index)),
+                    nextPriorities.get(index));
+        }
+    }
+
+    private class WakeupColumns {
+        private final Columns.Ints tasks = new Columns.Ints();
+        private final Columns.Ints priorities = new Columns.Ints();
+        private final Columns.Bytes successes = new Columns.Bytes();
+        private final Columns.Ints cpus = new Columns.Ints();
+
+        private int add(int task, int priority, byte success, int cpu) {
+            tasks.add(task);
+            priorities.add(priority);
+            successes.add(success);
+            return cpus.add(cpu);
+        }
+
+        private SchedWakeupFamilySpec get(RecordSpecification.Type type, int index) {
+            byte success = successes.get(index);
+            return new SchedWakeupFamilySpec(type,
+                    processes.get(tasks.get(index)),
+                    priorities.get(index),
+                    success == NO_SUCCESS ? null : success == 1,
+                    cpus.get(index));
+        }
+    }
+
+    private class MigrateColumns {
+        private final Columns.Ints tasks = new Columns.Ints();
+        private final Columns.Ints priorities = new Columns.Ints();
+        private final Columns.Ints origins = new Columns.Ints();
+        private final Columns.Ints destinations = new Columns.Ints();
+
+        private int add(int task, int priority, int origin, int destination) {
+            tasks.add(task);
+            priorities.add(priority);
+            origins.add(origin);
+            return destinations.add(destination);
+        }
+
+        private SchedMigrateTaskSpec get(int index) {
+            return new SchedMigrateTaskSpec(processes.get(tasks.get(index)),
+                    priorities.get(index),
+                    origins.get(index),
+                    destinations.get(index));
+        }
+    }
+
+    private static class GenericColumns {
+        private final Columns.Objects<RecordSpecification> specifications = new Columns.Objects<>();
+        private final Columns.Objects<List<StackTraceEntry>> stackTraces = new Columns.Objects<>();
+
+        private int add(RecordSpecification specification, List<StackTraceEntry> stackTrace) {
+            stackTraces.add(stackTrace.isEmpty() ? List.of() : stackTrace);
+            return specifications.add(specification);
+        }
+
+        private RecordSpecification getSpecification(int index) {
+            return specifications.get(index);
+        }
+
+        private List<StackTraceEntry> getStackTrace(int index) {
+            return stackTraces.get(index);
+        }
+    }
+}
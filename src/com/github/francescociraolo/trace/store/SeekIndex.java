@@ -0,0 +1,174 @@
+package com.github.francescociraolo.trace.store;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+Sparse index of a RecordStore: for every core, one entry each INTERVAL records of the core, holding the record
+ordinal and the greatest timestamp of the core up to it, besides the last ordinal and the greatest timestamp of the
+core. Seeking binary searches the entries of a core and scans the store between two consecutive entries of the core
+(at most INTERVAL records of the core, the ones of other cores in between skipped), even when timestamps are not
+sorted. A timestamp past every record of the core is answered without scanning
+ */
+class SeekIndex {
+
+    static final int INTERVAL = 256;
+
+    private final int[] cores;
+    private final long[][] timestamps;
+    private final int[][] ordinals;
+    private final int[] counts;
+    private final int[] lasts;
+    private final long[] maxima;
+
+    private SeekIndex(int[] cores, long[][] timestamps, int[][] ordinals, int[] counts, int[] lasts, long[] maxima) {
+        this.cores = cores;
+        this.timestamps = timestamps;
+        this.ordinals = ordinals;
+        this.counts = counts;
+        this.lasts = lasts;
+        this.maxima = maxima;
+    }
+
+    static SeekIndex build(RecordStore store) {
+        var cores = new int[0];
+        var timestamps = new long[0][];
+        var ordinals = new int[0][];
+        var counts = new int[0];
+        var seen = new int[0];
+        var lasts = new int[0];
+        var maxima = new long[0];
+
+        for (int i = 0; i < store.size(); i++) {
+            int core = store.getCore(i), slot = Arrays.binarySearch(cores, core);
+            if (slot < 0) {
+                slot = -slot - 1;
+                cores = insert(cores, slot, core);
+                timestamps = insert(timestamps, slot, new long[16]);
+                ordinals = insert(ordinals, slot, new int[16]);
+                counts = insert(counts, slot, 0);
+                seen = insert(seen, slot, 0);
+                lasts = insert(lasts, slot, 0);
+                maxima = insert(maxima, slot, Long.MIN_VALUE);
+            }
+
+            maxima[slot] = Math.max(maxima[slot], store.getTimestampNanos(i));
+            lasts[slot] = i;
+            if (seen[slot]++ % INTERVAL == 0) {
+                int count = counts[slot]++;
+                if (count == ordinals[slot].length) {
+                    timestamps[slot] = Arrays.copyOf(timestamps[slot], count * 2);
+                    ordinals[slot] = Arrays.copyOf(ordinals[slot], count * 2);
+                }
+                timestamps[slot][count] = maxima[slot];
+                ordinals[slot][count] = i;
+            }
+        }
+
+        return new SeekIndex(cores, timestamps, ordinals, counts, lasts, maxima);
+    }
+
+    /*
+    Ordinal of the first record not before the timestamp, the store size when there is none
+     */
+    int seek(RecordStore store, long nanos) {
+        int first = store.size();
+        for (int core : cores)
+            first = Math.min(first, seek(store, core, nanos));
+        return first;
+    }
+
+    /*
+    Ordinal of the first record of the core not before the timestamp, the store size when there is none
+     */
+    int seek(RecordStore store, int core, long nanos) {
+        int slot = Arrays.binarySearch(cores, core);
+        if (slot < 0 || nanos > maxima[slot])
+            return store.size();
+
+        /*
+        entries are sorted by their maximum: everything up to the last entry before the timestamp is before it, the
+        next entry (or the last record of the core) is not
+         */
+        var timestamps = this.timestamps[slot];
+        int low = 0, high = counts[slot] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[middle] < nanos)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        int from = low == 0 ? ordinals[slot][0] : ordinals[slot][low - 1];
+        int to = low == counts[slot] ? lasts[slot] : ordinals[slot][low];
+
+        for (int i = from; i <= to; i++)
+            if (store.getCore(i) == core && store.getTimestampNanos(i) >= nanos)
+                return i;
+        return store.size();
+    }
+
+    void write(DataOutput output) throws IOException {
+        output.writeInt(cores.length);
+        for (int slot = 0; slot < cores.length; slot++) {
+            output.writeInt(cores[slot]);
+            output.writeInt(counts[slot]);
+            output.writeInt(lasts[slot]);
+            output.writeLong(maxima[slot]);
+            for (int i = 0; i < counts[slot]; i++) {
+                output.writeLong(timestamps[slot][i]);
+                output.writeInt(ordinals[slot][i]);
+            }
+        }
+    }
+
+    static SeekIndex read(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        var cores = new int[length];
+        var timestamps = new long[length][];
+        var ordinals = new int[length][];
+        var counts = new int[length];
+        var lasts = new int[length];
+        var maxima = new long[length];
+
+        for (int slot = 0; slot < length; slot++) {
+            cores[slot] = buffer.getInt();
+            counts[slot] = buffer.getInt();
+            lasts[slot] = buffer.getInt();
+            maxima[slot] = buffer.getLong();
+            timestamps[slot] = new long[counts[slot]];
+            ordinals[slot] = new int[counts[slot]];
+            for (int i = 0; i < counts[slot]; i++) {
+                timestamps[slot][i] = buffer.getLong();
+                ordinals[slot][i] = buffer.getInt();
+            }
+        }
+
+        return new SeekIndex(cores, timestamps, ordinals, counts, lasts, maxima);
+    }
+
+    private static int[] insert(int[] array, int index, int value) {
+        var result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static long[] insert(long[] array, int index, long value) {
+        var result = new long[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static <T> T[] insert(T[] array, int index, T value) {
+        var result = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        result[index] = value;
+        return result;
+    }
+}
@@ -0,0 +1,649 @@
+package com.github.francescociraolo.trace.store;
+
+import com.github.francescociraolo.trace.ProcessInfo;
+import com.github.francescociraolo.trace.RecordSpecification;
+import com.github.francescociraolo.trace.RecordSpecification.FunctionEntrySpec;
+import com.github.francescociraolo.trace.RecordSpecification.FunctionExitSpec;
+import com.github.francescociraolo.trace.RecordSpecification.FunctionGraphSpec;
+import com.github.francescociraolo.trace.RecordSpecification.FunctionSpec;
+import com.github.francescociraolo.trace.RecordSpecification.KernelStackSpec;
+import com.github.francescociraolo.trace.RecordSpecification.SchedMigrateTaskSpec;
+import com.github.francescociraolo.trace.RecordSpecification.SchedSwitchSpec;
+import com.github.francescociraolo.trace.RecordSpecification.SchedWakeupFamilySpec;
+import com.github.francescociraolo.trace.StackTraceEntry;
+import com.github.francescociraolo.trace.reader.Trace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/*
+Binary copy of a RecordStore saved next to its trace ("trace.dat" -> "trace.dat.cache"), so that a trace is parsed
+once and later opens just map the cache. The cache is valid as long as size and modification time of the trace
+are the ones written in its header (see Key) and its version is the current one.
+
+Layout, big endian, ints in the blocks are zigzag varints:
+    header      magic, version, trace size, trace modification time, cpus, records
+    order       records unsigned shorts, the block of each record in the original sequence
+    blocks      one per core, the records of the core: timestamp delta from the previous one of the block, digits,
+                task, type, stack trace, fields of the type; processes are task indexes, texts are string indexes
+    strings     the table of distinct texts (process and function names, stack trace entries, durations)
+    processes   the table of tasks: pid, name string
+    directory   core, records count and offset of every block
+    seek index  see SeekIndex
+    trailer     offsets of strings, processes, directory and seek index, magic
+
+The file is read a window at a time (see Section), so its size is not bounded by the one of a mapped buffer
+ */
+public class TraceCache {
+
+    private static final int MAGIC = 0x54524331; // TRC1
+    private static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+    private static final int TRAILER_SIZE = 8 + 8 + 8 + 8 + 4;
+    private static final int MAX_BLOCKS = 0xFFFF;
+    /* bytes of the file mapped at once by a section */
+    private static final long WINDOW = 1 << 26;
+
+    private static final RecordSpecification.Type[] TYPES = RecordSpecification.Type.values();
+
+    private TraceCache() {
+    }
+
+    public static Path pathOf(Path trace) {
+        return trace.resolveSibling(trace.getFileName() + ".cache");
+    }
+
+    /*
+    The state of the trace a cache has been written from
+     */
+    public static class Key {
+
+        private final long size;
+        private final long modified;
+
+        private Key(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        public static Key of(Path trace) throws IOException {
+            return new Key(Files.size(trace), Files.getLastModifiedTime(trace).toMillis());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return size == key.size && modified == key.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, modified);
+        }
+    }
+
+    /*
+    The store cached for the trace, empty when there is no cache or it is stale, of another version or damaged
+     */
+    public static Optional<RecordStore> read(Path trace) throws IOException {
+        var path = pathOf(trace);
+        if (!Files.isRegularFile(path))
+            return Optional.empty();
+
+        var key = Key.of(trace);
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + TRAILER_SIZE)
+                return Optional.empty();
+
+            var header = new Section(channel, 0);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION
+                    || !key.equals(new Key(header.getLong(), header.getLong())))
+                return Optional.empty();
+
+            try {
+                return Optional.of(new Reader(channel, header).read());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                /* damaged, it will be written again */
+                return Optional.empty();
+            }
+        }
+    }
+
+    /*
+    The store of the trace, read from its cache or parsed and cached. A trace that cannot be cached is just parsed
+    again next time
+     */
+    public static RecordStore load(Path trace) throws IOException {
+        var cached = read(trace);
+        if (cached.isPresent())
+            return cached.get();
+
+        var key = Key.of(trace);
+        RecordStore store;
+        try (var source = Trace.fromDatFile(trace)) {
+            store = RecordStore.load(source);
+        }
+        try {
+            write(trace, key, store);
+        } catch (IOException e) {
+            System.err.printf("Unable to cache the trace: %s%n", e.getMessage());
+        }
+        return store;
+    }
+
+    /*
+    Writes the cache of a complete store, read from the trace in the state given by the key
+     */
+    public static void write(Path trace, Key key, RecordStore store) throws IOException {
+        if (!store.isComplete())
+            throw new IllegalStateException("The store does not hold the whole trace");
+
+        var path = pathOf(trace);
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try {
+            try (var channel = FileChannel.open(temporary,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                new Writer(store).write(channel, key);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static class Writer {
+
+        private final RecordStore store;
+        private final Map<String, Integer> stringIndexes;
+        private final List<String> strings;
+
+        private CountingOutputStream counter;
+        private DataOutputStream output;
+
+        private Writer(RecordStore store) {
+            this.store = store;
+            this.stringIndexes = new HashMap<>();
+            this.strings = new ArrayList<>();
+        }
+
+        private void write(FileChannel channel, Key key) throws IOException {
+            int size = store.size();
+
+            /* blocks in order of appearance of their core, records of a block linked by index */
+            var blockByCore = new HashMap<Integer, Integer>();
+            var blockCores = new ArrayList<Integer>();
+            var blockCounts = new ArrayList<Integer>();
+            var blockFirsts = new ArrayList<Integer>();
+            var blockLasts = new ArrayList<Integer>();
+            var nexts = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                int core = store.getCore(i);
+                var block = blockByCore.get(core);
+                if (block == null) {
+                    if (blockCores.size() == MAX_BLOCKS)
+                        throw new IOException("Too many cores to be cached");
+                    block = blockCores.size();
+                    blockByCore.put(core, block);
+                    blockCores.add(core);
+                    blockCounts.add(0);
+                    blockFirsts.add(i);
+                    blockLasts.add(i);
+                } else {
+                    nexts[blockLasts.get(block)] = i;
+                    blockLasts.set(block, i);
+                }
+                blockCounts.set(block, blockCounts.get(block) + 1);
+            }
+
+            counter = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            output = new DataOutputStream(counter);
+
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(key.size);
+            output.writeLong(key.modified);
+            output.writeInt(store.getCpusCount());
+            output.writeInt(size);
+
+            for (int i = 0; i < size; i++)
+                output.writeShort(blockByCore.get(store.getCore(i)));
+
+            var blockOffsets = new long[blockCores.size()];
+            for (int block = 0; block < blockCores.size(); block++) {
+                blockOffsets[block] = position();
+                long previousNanos = 0;
+                for (int i = blockFirsts.get(block), count = 0; count < blockCounts.get(block); i = nexts[i], count++) {
+                    writeRecord(i, previousNanos);
+                    previousNanos = store.getTimestampNanos(i);
+                }
+            }
+
+            /* process names are interned before the strings table is written */
+            for (int task = 0; task < store.getTasksCount(); task++)
+                string(store.getTaskProcess(task).getName());
+
+            long stringsOffset = position();
+            output.writeInt(strings.size());
+            for (var string : strings) {
+                var bytes = string.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+
+            long processesOffset = position();
+            output.writeInt(store.getTasksCount());
+            for (int task = 0; task < store.getTasksCount(); task++) {
+                var process = store.getTaskProcess(task);
+                output.writeInt(process.getPid());
+                output.writeInt(stringIndexes.get(process.getName()));
+            }
+
+            long directoryOffset = position();
+            output.writeInt(blockCores.size());
+            for (int block = 0; block < blockCores.size(); block++) {
+                output.writeInt(blockCores.get(block));
+                output.writeInt(blockCounts.get(block));
+                output.writeLong(blockOffsets[block]);
+            }
+
+            long seekIndexOffset = position();
+            store.getSeekIndex().write(output);
+
+            output.writeLong(stringsOffset);
+            output.writeLong(processesOffset);
+            output.writeLong(directoryOffset);
+            output.writeLong(seekIndexOffset);
+            output.writeInt(MAGIC);
+
+            output.flush();
+        }
+
+        /* DataOutputStream stops counting at Integer.MAX_VALUE */
+        private long position() {
+            return counter.count;
+        }
+
+        private void writeRecord(int index, long previousNanos) throws IOException {
+            var type = store.getType(index);
+            var specification = store.getSpecification(index);
+            var stackTrace = store.getStackTrace(index);
+
+            writeLong(store.getTimestampNanos(index) - previousNanos);
+            output.writeByte(store.getTimestamp(index).getDigits());
+            writeInt(store.getTask(index));
+            output.writeByte(type.ordinal());
+
+            writeInt(stackTrace.size());
+            for (var entry : stackTrace) {
+                writeString(entry.getFunctionName());
+                writeString(entry.getAddress());
+            }
+
+            switch (type) {
+                case SCHED_SWITCH: {
+                    var switchSpec = (SchedSwitchSpec) specification;
+                    writeInt(store.task(switchSpec.getPreviousProcess()));
+                    writeInt(switchSpec.getPreviousPriority());
+                    writeInt(switchSpec.getPreviousState());
+                    writeInt(store.task(switchSpec.getNextProcess()));
+                    writeInt(switchSpec.getNextPriority());
+                    break;
+                }
+                case SCHED_WAKEUP:
+                case SCHED_WAKEUP_NEW: {
+                    var wakeupSpec = (SchedWakeupFamilySpec) specification;
+                    var success = wakeupSpec.isSuccess();
+                    writeInt(store.task(wakeupSpec.getWakingProcess()));
+                    writeInt(wakeupSpec.getPriority());
+                    output.writeByte(success == null ? RecordStore.NO_SUCCESS : success ? 1 : 0);
+                    writeInt(wakeupSpec.getDestinationCpu());
+                    break;
+                }
+                case SCHED_MIGRATE_TASK: {
+                    var migrateSpec = (SchedMigrateTaskSpec) specification;
+                    writeInt(store.task(migrateSpec.getProcess()));
+                    writeInt(migrateSpec.getPriority());
+                    writeInt(migrateSpec.getSourceCpu());
+                    writeInt(migrateSpec.getDestinationCpu());
+                    break;
+                }
+                case FUNCTION:
+                    writeString(((FunctionSpec) specification).getFunctionName());
+                    break;
+                case FUNCTION_ENTRY: {
+                    var entrySpec = (FunctionEntrySpec) specification;
+                    writeInt(entrySpec.getDepth());
+                    writeDuration(entrySpec.getDuration());
+                    writeString(entrySpec.getFunctionName());
+                    output.writeByte(entrySpec.isClosed() ? 1 : 0);
+                    break;
+                }
+                case FUNCTION_EXIT: {
+                    var exitSpec = (FunctionExitSpec) specification;
+                    writeInt(exitSpec.getDepth());
+                    writeDuration(exitSpec.getDuration());
+                    break;
+                }
+                case KERNEL_STACK:
+                    break;
+            }
+        }
+
+        private void writeDuration(FunctionGraphSpec.Duration duration) throws IOException {
+            writeString(duration == null ? null : duration.getDurationString());
+            if (duration != null)
+                writeString(duration.getUnitString());
+        }
+
+        /* index + 1 in the strings table, 0 for null */
+        private void writeString(String string) throws IOException {
+            writeInt(string == null ? 0 : string(string) + 1);
+        }
+
+        private int string(String string) {
+            var index = stringIndexes.get(string);
+            if (index == null) {
+                index = strings.size();
+                strings.add(string);
+                stringIndexes.put(string, index);
+            }
+            return index;
+        }
+
+        private void writeInt(int value) throws IOException {
+            writeLong(value);
+        }
+
+        private void writeLong(long value) throws IOException {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                output.writeByte((int) (zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            output.writeByte((int) zigzag);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /*
+    Part of the cache read in order from an offset: a window of the file is mapped at a time and the next one when
+    a value does not fit in what is left of it. Past the end of the file reads underflow as for a buffer
+     */
+    private static class Section {
+
+        private final FileChannel channel;
+        private final long fileSize;
+        private long offset;
+        private ByteBuffer buffer;
+
+        private Section(FileChannel channel, long offset) throws IOException {
+            this.channel = channel;
+            this.fileSize = channel.size();
+            map(offset, 0);
+        }
+
+        private void map(long offset, int bytes) throws IOException {
+            if (offset < 0 || offset > fileSize)
+                throw new IllegalStateException("Offset out of the cache");
+            this.offset = offset;
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                    Math.min(Math.max(WINDOW, bytes), fileSize - offset));
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes)
+                try {
+                    map(offset + buffer.position(), bytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            return buffer;
+        }
+
+        private byte get() {
+            return ensure(1).get();
+        }
+
+        private char getChar() {
+            return ensure(2).getChar();
+        }
+
+        private int getInt() {
+            return ensure(4).getInt();
+        }
+
+        private long getLong() {
+            return ensure(8).getLong();
+        }
+
+        private void get(byte[] bytes) {
+            ensure(bytes.length).get(bytes);
+        }
+
+        /*
+        The next bytes as one buffer, for the parts of the cache read by other classes
+         */
+        private ByteBuffer slice(long bytes) {
+            if (bytes < 0 || bytes > Integer.MAX_VALUE)
+                throw new IllegalStateException("Section too large");
+            return ensure((int) bytes).slice().limit((int) bytes);
+        }
+    }
+
+    private static class Reader {
+
+        private final FileChannel channel;
+        private final long fileSize;
+        private final RecordStore store;
+        private final int size;
+
+        private String[] strings;
+
+        private Reader(FileChannel channel, Section header) {
+            this.channel = channel;
+            this.fileSize = header.fileSize;
+            this.store = new RecordStore(header.getInt());
+            this.size = header.getInt();
+        }
+
+        private Section section(long offset) {
+            try {
+                return new Section(channel, offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private RecordStore read() {
+            var trailer = section(fileSize - TRAILER_SIZE);
+            long stringsOffset = trailer.getLong(),
+                    processesOffset = trailer.getLong(),
+                    directoryOffset = trailer.getLong(),
+                    seekIndexOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC)
+                throw new IllegalStateException("Truncated cache");
+
+            var strings = section(stringsOffset);
+            this.strings = new String[strings.getInt()];
+            for (int i = 0; i < this.strings.length; i++) {
+                var bytes = new byte[strings.getInt()];
+                strings.get(bytes);
+                this.strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            var processes = section(processesOffset);
+            for (int task = 0, count = processes.getInt(); task < count; task++)
+                if (store.task(new ProcessInfo(processes.getInt(), this.strings[processes.getInt()])) != task)
+                    throw new IllegalStateException("Duplicated process");
+
+            var directory = section(directoryOffset);
+            var blocks = new Section[directory.getInt()];
+            var cores = new int[blocks.length];
+            var previousNanos = new long[blocks.length];
+            for (int block = 0; block < blocks.length; block++) {
+                cores[block] = directory.getInt();
+                directory.getInt();
+                blocks[block] = section(directory.getLong());
+            }
+
+            var order = section(HEADER_SIZE);
+            for (int i = 0; i < size; i++) {
+                int block = order.getChar();
+                previousNanos[block] = readRecord(blocks[block], cores[block], previousNanos[block]);
+            }
+
+            var seekIndex = section(seekIndexOffset).slice(fileSize - TRAILER_SIZE - seekIndexOffset);
+            store.setSeekIndex(SeekIndex.read(seekIndex));
+            store.markComplete();
+            return store;
+        }
+
+        /*
+        Returns the timestamp of the record
+         */
+        private long readRecord(Section block, int core, long previousNanos) {
+            long nanos = previousNanos + readLong(block);
+            int digits = block.get(), task = readInt(block);
+            var type = TYPES[block.get()];
+
+            var stackTrace = readStackTrace(block);
+
+            if (!stackTrace.isEmpty())
+                store.addGeneric(nanos, digits, core, task, readSpecification(type, block), stackTrace);
+            else switch (type) {
+                case SCHED_SWITCH:
+                    store.addSwitch(nanos, digits, core, task,
+                            readInt(block), readInt(block), (char) readInt(block), readInt(block), readInt(block));
+                    break;
+                case SCHED_WAKEUP:
+                case SCHED_WAKEUP_NEW:
+                    store.addWakeup(nanos, digits, core, task, type,
+                            readInt(block), readInt(block), block.get(), readInt(block));
+                    break;
+                case SCHED_MIGRATE_TASK:
+                    store.addMigration(nanos, digits, core, task,
+                            readInt(block), readInt(block), readInt(block), readInt(block));
+                    break;
+                default:
+                    store.addGeneric(nanos, digits, core, task, readSpecification(type, block), stackTrace);
+            }
+
+            return nanos;
+        }
+
+        private List<StackTraceEntry> readStackTrace(Section block) {
+            int count = readInt(block);
+            if (count == 0)
+                return List.of();
+
+            var stackTrace = new ArrayList<StackTraceEntry>(count);
+            for (int i = 0; i < count; i++)
+                stackTrace.add(new StackTraceEntry(readString(block), readString(block)));
+            return stackTrace;
+        }
+
+        private RecordSpecification readSpecification(RecordSpecification.Type type, Section block) {
+            switch (type) {
+                case SCHED_SWITCH:
+                    return new SchedSwitchSpec(process(readInt(block)), readInt(block), (char) readInt(block),
+                            process(readInt(block)), readInt(block));
+                case SCHED_WAKEUP:
+                case SCHED_WAKEUP_NEW: {
+                    var process = process(readInt(block));
+                    int priority = readInt(block);
+                    byte success = block.get();
+                    return new SchedWakeupFamilySpec(type, process, priority,
+                            success == RecordStore.NO_SUCCESS ? null : success == 1, readInt(block));
+                }
+                case SCHED_MIGRATE_TASK:
+                    return new SchedMigrateTaskSpec(process(readInt(block)), readInt(block), readInt(block),
+                            readInt(block));
+                case FUNCTION:
+                    return new FunctionSpec(readString(block));
+                case FUNCTION_ENTRY:
+                    return new FunctionEntrySpec(readInt(block), readDuration(block), readString(block),
+                            block.get() == 1);
+                case FUNCTION_EXIT:
+                    return new FunctionExitSpec(readInt(block), readDuration(block));
+                case KERNEL_STACK:
+                    return KernelStackSpec.INSTANCE;
+                default:
+                    throw new IllegalStateException("Unknown type " + type);
+            }
+        }
+
+        private ProcessInfo process(int task) {
+            return store.getTaskProcess(task);
+        }
+
+        private FunctionGraphSpec.Duration readDuration(Section block) {
+            var duration = readString(block);
+            return duration == null ? null : new FunctionGraphSpec.Duration(duration, readString(block));
+        }
+
+        private String readString(Section block) {
+            int index = readInt(block);
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        private static int readInt(Section block) {
+            return (int) readLong(block);
+        }
+
+        private static long readLong(Section block) {
+            long zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = block.get();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
@@ -4,9 +4,11 @@ import com.github.francescociraolo.trace.ProcessInfo;
 import com.github.francescociraolo.trace.Record;
 import com.github.francescociraolo.trace.RecordSpecification;
 import com.github.francescociraolo.trace.peepers.SliceCollector;
-import com.github.francescociraolo.trace.reader.FilteredTrace;
+import com.github.francescociraolo.trace.filter.RecordFilter;
 import com.github.francescociraolo.trace.reader.PeepTrace;
 import com.github.francescociraolo.trace.reader.Trace;
+import com.github.francescociraolo.trace.store.PostingList;
+import com.github.francescociraolo.trace.store.TraceCache;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -29,6 +31,26 @@ public class CoreStatistics {
                 && ((RecordSpecification.SchedSwitchSpec) record.getSpecification()).getNextProcess().equals(process);
     }
 
+    /*
+    Switches of the process, through the index
+     */
+    private RecordFilter firstRecordFilter() {
+        return RecordFilter.of("process", process.toString(), this::firstFilter, index -> PostingList.intersection(
+                index.ofRelatedPid(process.getPid()), index.ofType(RecordSpecification.Type.SCHED_SWITCH)));
+    }
+
+    /*
+    Switches and migrations of the process, through the index
+     */
+    private RecordFilter recordFilter() {
+        return RecordFilter.of("process", process.toString(), this::filter, index -> {
+            var records = index.ofRelatedPid(process.getPid());
+            return PostingList.union(
+                    PostingList.intersection(records, index.ofType(RecordSpecification.Type.SCHED_SWITCH)),
+                    PostingList.intersection(records, index.ofType(RecordSpecification.Type.SCHED_MIGRATE_TASK)));
+        });
+    }
+
     private boolean filter(Record record) {
         switch (record.getType()) {
             case SCHED_SWITCH:
@@ -44,20 +66,20 @@ public class CoreStatistics {
     }
 
     void analyze() throws IOException {
-        Trace trace = Trace.fromDatFile(tracePath);
+        Trace trace = TraceCache.load(tracePath).cursor();
 
         int cpusCount = trace.getCpusCount();
         double[] timePerCore = new double[cpusCount];
         int[][] migrationCount = new int[cpusCount][cpusCount];
 
-        Trace filteredTrace = new FilteredTrace(trace, this::firstFilter);
+        Trace filteredTrace = trace.filtered(firstRecordFilter());
         SliceCollector sliceCollector = new SliceCollector();
         filteredTrace = new PeepTrace(filteredTrace, sliceCollector);
 
         Record.Timestamp lastTimestamp = filteredTrace.next().getTimestamp();
         int core, lastCore = -1;
 
-        filteredTrace = new FilteredTrace(trace, this::filter);
+        filteredTrace = trace.filtered(recordFilter());
         trace = new PeepTrace(filteredTrace, sliceCollector);
 
         while (trace.hasNext()) {
@@ -131,7 +153,7 @@ public class CoreStatistics {
 
 
     static CoreStatistics analyze(Path tracePath, Path pidPath, String processName) throws IOException {
-//        Trace trace = Trace.fromDatFile(tracePath);
+//        Trace trace = TraceCache.load(tracePath).cursor();
         int pid = Integer.parseInt(Files.readString(pidPath).strip());
         ProcessInfo process = new ProcessInfo(pid, processName);
 
@@ -107,72 +107,74 @@ public class MigrationsStatistics {
     }
 
     public void printReport() throws IOException {
-        while (trace.hasNext()) {
-            Record record = trace.next();
-            if (record != null) {
-                if (record.getSpecification().getType() == RecordSpecification.Type.SCHED_MIGRATE_TASK) {
-                    RecordSpecification.SchedMigrateTaskSpec specification
-                            = (RecordSpecification.SchedMigrateTaskSpec) record.getSpecification();
-                    System.out.println();
-
-                    int source = specification.getSourceCpu(), destination = specification.getDestinationCpu();
-                    for (LastWakeup.Wakeup woken : lastWakeup.get(source))
-                        System.out.printf("%s [%02d] wakeup %s\n",
-                                woken.getTimestamp(),
+        try (trace) {
+            while (trace.hasNext()) {
+                Record record = trace.next();
+                if (record != null) {
+                    if (record.getSpecification().getType() == RecordSpecification.Type.SCHED_MIGRATE_TASK) {
+                        RecordSpecification.SchedMigrateTaskSpec specification
+                                = (RecordSpecification.SchedMigrateTaskSpec) record.getSpecification();
+                        System.out.println();
+
+                        int source = specification.getSourceCpu(), destination = specification.getDestinationCpu();
+                        for (LastWakeup.Wakeup woken : lastWakeup.get(source))
+                            System.out.printf("%s [%02d] wakeup %s\n",
+                                    woken.getTimestamp(),
+                                    source,
+                                    woken.getProcess().toTwoPointsString());
+                        System.out.printf("%s [%02d] to [%02d] migration %s\n",
+                                record.getTimestamp(),
                                 source,
-                                woken.getProcess().toTwoPointsString());
-                    System.out.printf("%s [%02d] to [%02d] migration %s\n",
-                            record.getTimestamp(),
-                            source,
-                            destination,
-                            specification.getProcess().toTwoPointsString());
-                    System.out.printf("\tcurrent [%02d] process %s\n",
-                            source,
-                            processesStatus.getProcesses().get(source).toTwoPointsString());
-
-
-//                    System.out.println(record);
-//                    float time = Float.parseFloat(record.getTimestamp());
-//                    List<Map<CPUsLoad.CommonStatus, Float>> loadData = cpusLoad.getLoadData(time - 5, time);
-//                    float srcIdle = loadData.get(source).getOrDefault(CPUsLoad.CommonStatus.IDLE, 0F),
-//                            dstIdle = loadData.get(destination).getOrDefault(CPUsLoad.CommonStatus.IDLE, 0F);
-//                    System.out.printf("Source CPU [%d] idle %6.2f%% time\nDestination CPU [%d] idle %6.2f%% time\n",
-//                            source, srcIdle * 100, destination, dstIdle * 100);
-//                    List<LastWakeup.Wakeup> wakeup = lastWakeup.get(source);
-//                    System.out.printf("Last woken process on source core [%d]: %s at %s\n",
-//                            source,
-//                            wakeup.get(1).getProcess().toTwoPointsString(),
-//                            wakeup.get(1).getTimestamp());
-//                    System.out.printf("before woken process on source core [%d]: %s at %s\n",
-//                            source,
-//                            wakeup.get(0).getProcess().toTwoPointsString(),
-//                            wakeup.get(0).getTimestamp());
-                    migrationsTimestamp.add(record);
-                    lastCore = source;
-                    idle = true;
-                    nextWakeup = true;
-                }
+                                destination,
+                                specification.getProcess().toTwoPointsString());
+                        System.out.printf("\tcurrent [%02d] process %s\n",
+                                source,
+                                processesStatus.getProcesses().get(source).toTwoPointsString());
+
+
+    //                    System.out.println(record);
+    //                    float time = Float.parseFloat(record.getTimestamp());
+    //                    List<Map<CPUsLoad.CommonStatus, Float>> loadData = cpusLoad.getLoadData(time - 5, time);
+    //                    float srcIdle = loadData.get(source).getOrDefault(CPUsLoad.CommonStatus.IDLE, 0F),
+    //                            dstIdle = loadData.get(destination).getOrDefault(CPUsLoad.CommonStatus.IDLE, 0F);
+    //                    System.out.printf("Source CPU [%d] idle %6.2f%% time\nDestination CPU [%d] idle %6.2f%% time\n",
+    //                            source, srcIdle * 100, destination, dstIdle * 100);
+    //                    List<LastWakeup.Wakeup> wakeup = lastWakeup.get(source);
+    //                    System.out.printf("Last woken process on source core [%d]: %s at %s\n",
+    //                            source,
+    //                            wakeup.get(1).getProcess().toTwoPointsString(),
+    //                            wakeup.get(1).getTimestamp());
+    //                    System.out.printf("before woken process on source core [%d]: %s at %s\n",
+    //                            source,
+    //                            wakeup.get(0).getProcess().toTwoPointsString(),
+    //                            wakeup.get(0).getTimestamp());
+                        migrationsTimestamp.add(record);
+                        lastCore = source;
+                        idle = true;
+                        nextWakeup = true;
+                    }
 
-                if (record.getSpecification().getType() == RecordSpecification.Type.SCHED_SWITCH) {
-                    RecordSpecification.SchedSwitchSpec specification
-                            = (RecordSpecification.SchedSwitchSpec) record.getSpecification();
-                    ProcessInfo nextProcess = specification.getNextProcess(),
-                            previousProcess = specification.getPreviousProcess();
-                    String nextProcessName = nextProcess.getName();
-                    if (idle || (!nextProcessName.startsWith("swapper"))
-                            && !nextProcessName.startsWith("kworker")
-                            && !nextProcessName.startsWith("migration")) {
-                        System.out.printf("%s [%02d] switch %s to %s\n",
-                                record.getTimestamp(),
-                                lastCore,
-                                previousProcess.toTwoPointsString(),
-                                nextProcess.toTwoPointsString());
-//                        System.out.printf("Next source [%d] switch: %s at %s\n",
-//                                lastCore,
-//                                nextProcess.toTwoPointsString(),
-//                                record.getTimestamp());
-                        if (idle) idle = false;
-                        else lastCore = -1;
+                    if (record.getSpecification().getType() == RecordSpecification.Type.SCHED_SWITCH) {
+                        RecordSpecification.SchedSwitchSpec specification
+                                = (RecordSpecification.SchedSwitchSpec) record.getSpecification();
+                        ProcessInfo nextProcess = specification.getNextProcess(),
+                                previousProcess = specification.getPreviousProcess();
+                        String nextProcessName = nextProcess.getName();
+                        if (idle || (!nextProcessName.startsWith("swapper"))
+                                && !nextProcessName.startsWith("kworker")
+                                && !nextProcessName.startsWith("migration")) {
+                            System.out.printf("%s [%02d] switch %s to %s\n",
+                                    record.getTimestamp(),
+                                    lastCore,
+                                    previousProcess.toTwoPointsString(),
+                                    nextProcess.toTwoPointsString());
+    //                        System.out.printf("Next source [%d] switch: %s at %s\n",
+    //                                lastCore,
+    //                                nextProcess.toTwoPointsString(),
+    //                                record.getTimestamp());
+                            if (idle) idle = false;
+                            else lastCore = -1;
+                        }
                     }
                 }
             }
@@ -414,83 +416,85 @@ public class MigrationsStatistics {
         trace = new PeepTrace(trace, migrationCounter);
         Record.Timestamp lastTimestamp = null;
         int lastLeavingCore = -1;
-        while (trace.hasNext()) {
-            Record record = trace.next();
-            if (lastTimestamp == null && record != null) {
-                lastTimestamp = record.getTimestamp();
-            }
-            if (record != null) {
-                RecordSpecification.SchedMigrateTaskSpec spec
-                        = (RecordSpecification.SchedMigrateTaskSpec) record.getSpecification();
-                boolean threeColumn = lastLeavingCore != -1
-                        && lastLeavingCore != spec.getSourceCpu()
-                        && lastLeavingCore != spec.getDestinationCpu();
-                int[] cores = new int[threeColumn ? 3 : 2];
-                int i = 0;
-                if (threeColumn) cores[i++] = lastLeavingCore;
-                cores[i++] = spec.getSourceCpu();
-                cores[i] = spec.getDestinationCpu();
-
-                HashMap<Integer, List<SliceCollector.ProcessData>> processData = sliceCollector.collectAndReset(record.getTimestamp(), cores);
-                double delta = record.getTimestamp().timeFrom(lastTimestamp);
-                String[][] table = extractTableData(processData, cores, 10, lastTimestamp);
-                lastTimestamp = record.getTimestamp();
-                lastLeavingCore = spec.getSourceCpu();
-
-                double time = 0, ratio = 0;
-                List<SliceCollector.ProcessData> processData1 = processData.get(spec.getSourceCpu());
-                for (var d : processData1) {
-                    if (d.process.getName().equals("while1")) {
-                        ratio = d.ratio;
-                        time += d.ratio * delta;
-                    }
+        try (var records = trace) {
+            while (records.hasNext()) {
+                Record record = records.next();
+                if (lastTimestamp == null && record != null) {
+                    lastTimestamp = record.getTimestamp();
                 }
+                if (record != null) {
+                    RecordSpecification.SchedMigrateTaskSpec spec
+                            = (RecordSpecification.SchedMigrateTaskSpec) record.getSpecification();
+                    boolean threeColumn = lastLeavingCore != -1
+                            && lastLeavingCore != spec.getSourceCpu()
+                            && lastLeavingCore != spec.getDestinationCpu();
+                    int[] cores = new int[threeColumn ? 3 : 2];
+                    int i = 0;
+                    if (threeColumn) cores[i++] = lastLeavingCore;
+                    cores[i++] = spec.getSourceCpu();
+                    cores[i] = spec.getDestinationCpu();
+
+                    HashMap<Integer, List<SliceCollector.ProcessData>> processData = sliceCollector.collectAndReset(record.getTimestamp(), cores);
+                    double delta = record.getTimestamp().timeFrom(lastTimestamp);
+                    String[][] table = extractTableData(processData, cores, 10, lastTimestamp);
+                    lastTimestamp = record.getTimestamp();
+                    lastLeavingCore = spec.getSourceCpu();
+
+                    double time = 0, ratio = 0;
+                    List<SliceCollector.ProcessData> processData1 = processData.get(spec.getSourceCpu());
+                    for (var d : processData1) {
+                        if (d.process.getName().equals("while1")) {
+                            ratio = d.ratio;
+                            time += d.ratio * delta;
+                        }
+                    }
 
-//                spec.getSourceCpu();
-//                System.out.printf("Timestamp:%s\nDelta time: %f\nRatio:%f\nTime:%f\n\n", lastTimestamp, delta, ratio, ratio*delta);
-                executionTime1.put(spec.getSourceCpu(), executionTime1.getOrDefault(spec.getSourceCpu(), 0D) + time);
-
-//                int maxSize = 0;
-//                System.out.print("| ");
-//                for (int core : cores) {
-//                    maxSize = Math.max(maxSize, processData.get(core).size());
-//                    System.out.printf("%-57s | ", String.format("Core %03d", core));
-//                }
-//                maxSize = Math.min(10, maxSize);
-//                System.out.println();
-//                System.out.print("| ");
-//                for (int ignored : cores) {
-//                    System.out.printf("%-29s | %-12s | %-10s | ", "Process", "First in", "Time usage");
-//                }
-//                System.out.println();
-//
-//                SliceCollector.ProcessData[][] data = new SliceCollector.ProcessData[cores.length][maxSize];
-//                for (int c = 0; c < cores.length; c++) {
-//                    List<SliceCollector.ProcessData> list = processData.get(cores[c]);
-//                    list.sort(Comparator.comparingDouble(SliceCollector.ProcessData::getRatio).reversed());
-//                    int r = 0;
-//                    for (; r < maxSize && r < list.size(); r++) data[c][r] = list.get(r);
-//                    for (; r < maxSize; r++) data[c][r] = null;
-//                }
-//
-//                String process, firstIn, usage;
-//
-//                for (int r = 0; r < maxSize; r++) {
-//                    System.out.print("| ");
-//                    for (int c = 0; c < cores.length; c++) {
-//                        if (data[c][r] != null) {
-//                            process = data[c][r].process.toTwoPointsString();
-//                            firstIn = String.valueOf(data[c][r].timestamp);
-//                            usage = String.format("%-9f%%", data[c][r].ratio * 100);
-//                        } else process = firstIn = usage = "";
-//                        System.out.printf("%-29s | %-12s | %-10s | ", process, firstIn, usage);
-//                    }
-//                    System.out.println();
-//                }
-
-                printLaTeXTable(table, 2);
-//                System.out.println(record);
-                System.out.printf("\\verb|%s|\n", record);
+    //                spec.getSourceCpu();
+    //                System.out.printf("Timestamp:%s\nDelta time: %f\nRatio:%f\nTime:%f\n\n", lastTimestamp, delta, ratio, ratio*delta);
+                    executionTime1.put(spec.getSourceCpu(), executionTime1.getOrDefault(spec.getSourceCpu(), 0D) + time);
+
+    //                int maxSize = 0;
+    //                System.out.print("| ");
+    //                for (int core : cores) {
+    //                    maxSize = Math.max(maxSize, processData.get(core).size());
+    //                    System.out.printf("%-57s | ", String.format("Core %03d", core));
+    //                }
+    //                maxSize = Math.min(10, maxSize);
+    //                System.out.println();
+    //                System.out.print("| ");
+    //                for (int ignored : cores) {
+    //                    System.out.printf("%-29s | %-12s | %-10s | ", "Process", "First in", "Time usage");
+    //                }
+    //                System.out.println();
+    //
+    //                SliceCollector.ProcessData[][] data = new SliceCollector.ProcessData[cores.length][maxSize];
+    //                for (int c = 0; c < cores.length; c++) {
+    //                    List<SliceCollector.ProcessData> list = processData.get(cores[c]);
+    //                    list.sort(Comparator.comparingDouble(SliceCollector.ProcessData::getRatio).reversed());
+    //                    int r = 0;
+    //                    for (; r < maxSize && r < list.size(); r++) data[c][r] = list.get(r);
+    //                    for (; r < maxSize; r++) data[c][r] = null;
+    //                }
+    //
+    //                String process, firstIn, usage;
+    //
+    //                for (int r = 0; r < maxSize; r++) {
+    //                    System.out.print("| ");
+    //                    for (int c = 0; c < cores.length; c++) {
+    //                        if (data[c][r] != null) {
+    //                            process = data[c][r].process.toTwoPointsString();
+    //                            firstIn = String.valueOf(data[c][r].timestamp);
+    //                            usage = String.format("%-9f%%", data[c][r].ratio * 100);
+    //                        } else process = firstIn = usage = "";
+    //                        System.out.printf("%-29s | %-12s | %-10s | ", process, firstIn, usage);
+    //                    }
+    //                    System.out.println();
+    //                }
+
+                    printLaTeXTable(table, 2);
+    //                System.out.println(record);
+                    System.out.printf("\\verb|%s|\n", record);
+                }
             }
         }
 
@@ -108,72 +108,74 @@ public class UnreasonableMigrations {
     }
 
     public void printReport() throws IOException {
-        while (trace.hasNext()) {
-            Record record = trace.next();
-            if (record != null) {
-                if (record.getSpecification().getType() == RecordSpecification.Type.SCHED_MIGRATE_TASK) {
-                    RecordSpecification.SchedMigrateTaskSpec specification
-                            = (RecordSpecification.SchedMigrateTaskSpec) record.getSpecification();
-                    System.out.println();
-
-                    int source = specification.getSourceCpu(), destination = specification.getDestinationCpu();
-                    for (LastWakeup.Wakeup woken : lastWakeup.get(source))
-                        System.out.printf("%s [%02d] wakeup %s\n",
-                                woken.getTimestamp(),
+        try (trace) {
+            while (trace.hasNext()) {
+                Record record = trace.next();
+                if (record != null) {
+                    if (record.getSpecification().getType() == RecordSpecification.Type.SCHED_MIGRATE_TASK) {
+                        RecordSpecification.SchedMigrateTaskSpec specification
+                                = (RecordSpecification.SchedMigrateTaskSpec) record.getSpecification();
+                        System.out.println();
+
+                        int source = specification.getSourceCpu(), destination = specification.getDestinationCpu();
+                        for (LastWakeup.Wakeup woken : lastWakeup.get(source))
+                            System.out.printf("%s [%02d] wakeup %s\n",
+                                    woken.getTimestamp(),
+                                    source,
+                                    woken.getProcess().toTwoPointsString());
+                        System.out.printf("%s [%02d] to [%02d] migration %s\n",
+                                record.getTimestamp(),
                                 source,
-                                woken.getProcess().toTwoPointsString());
-                    System.out.printf("%s [%02d] to [%02d] migration %s\n",
-                            record.getTimestamp(),
-                            source,
-                            destination,
-                            specification.getProcess().toTwoPointsString());
-                    System.out.printf("\tcurrent [%02d] process %s\n",
-                            source,
-                            processesStatus.getProcesses().get(source).toTwoPointsString());
-
-
-//                    System.out.println(record);
-//                    float time = Float.parseFloat(record.getTimestamp());
-//                    List<Map<CPUsLoad.CommonStatus, Float>> loadData = cpusLoad.getLoadData(time - 5, time);
-//                    float srcIdle = loadData.get(source).getOrDefault(CPUsLoad.CommonStatus.IDLE, 0F),
-//                            dstIdle = loadData.get(destination).getOrDefault(CPUsLoad.CommonStatus.IDLE, 0F);
-//                    System.out.printf("Source CPU [%d] idle %6.2f%% time\nDestination CPU [%d] idle %6.2f%% time\n",
-//                            source, srcIdle * 100, destination, dstIdle * 100);
-//                    List<LastWakeup.Wakeup> wakeup = lastWakeup.get(source);
-//                    System.out.printf("Last woken process on source core [%d]: %s at %s\n",
-//                            source,
-//                            wakeup.get(1).getProcess().toTwoPointsString(),
-//                            wakeup.get(1).getTimestamp());
-//                    System.out.printf("before woken process on source core [%d]: %s at %s\n",
-//                            source,
-//                            wakeup.get(0).getProcess().toTwoPointsString(),
-//                            wakeup.get(0).getTimestamp());
-                    migrationsTimestamp.add(record);
-                    lastCore = source;
-                    idle = true;
-                    nextWakeup = true;
-                }
+                                destination,
+                                specification.getProcess().toTwoPointsString());
+                        System.out.printf("\tcurrent [%02d] process %s\n",
+                                source,
+                                processesStatus.getProcesses().get(source).toTwoPointsString());
+
+
+    //                    System.out.println(record);
+    //                    float time = Float.parseFloat(record.getTimestamp());
+    //                    List<Map<CPUsLoad.CommonStatus, Float>> loadData = cpusLoad.getLoadData(time - 5, time);
+    //                    float srcIdle = loadData.get(source).getOrDefault(CPUsLoad.CommonStatus.IDLE, 0F),
+    //                            dstIdle = loadData.get(destination).getOrDefault(CPUsLoad.CommonStatus.IDLE, 0F);
+    //                    System.out.printf("Source CPU [%d] idle %6.2f%% time\nDestination CPU [%d] idle %6.2f%% time\n",
+    //                            source, srcIdle * 100, destination, dstIdle * 100);
+    //                    List<LastWakeup.Wakeup> wakeup = lastWakeup.get(source);
+    //                    System.out.printf("Last woken process on source core [%d]: %s at %s\n",
+    //                            source,
+    //                            wakeup.get(1).getProcess().toTwoPointsString(),
+    //                            wakeup.get(1).getTimestamp());
+    //                    System.out.printf("before woken process on source core [%d]: %s at %s\n",
+    //                            source,
+    //                            wakeup.get(0).getProcess().toTwoPointsString(),
+    //                            wakeup.get(0).getTimestamp());
+                        migrationsTimestamp.add(record);
+                        lastCore = source;
+                        idle = true;
+                        nextWakeup = true;
+                    }
 
-                if (record.getSpecification().getType() == RecordSpecification.Type.SCHED_SWITCH) {
-                    RecordSpecification.SchedSwitchSpec specification
-                            = (RecordSpecification.SchedSwitchSpec) record.getSpecification();
-                    ProcessInfo nextProcess = specification.getNextProcess(),
-                            previousProcess = specification.getPreviousProcess();
-                    String nextProcessName = nextProcess.getName();
-                    if (idle || (!nextProcessName.startsWith("swapper"))
-                            && !nextProcessName.startsWith("kworker")
-                            && !nextProcessName.startsWith("migration")) {
-                        System.out.printf("%s [%02d] switch %s to %s\n",
-                                record.getTimestamp(),
-                                lastCore,
-                                previousProcess.toTwoPointsString(),
-                                nextProcess.toTwoPointsString());
-//                        System.out.printf("Next source [%d] switch: %s at %s\n",
-//                                lastCore,
-//                                nextProcess.toTwoPointsString(),
-//                                record.getTimestamp());
-                        if (idle) idle = false;
-                        else lastCore = -1;
+                    if (record.getSpecification().getType() == RecordSpecification.Type.SCHED_SWITCH) {
+                        RecordSpecification.SchedSwitchSpec specification
+                                = (RecordSpecification.SchedSwitchSpec) record.getSpecification();
+                        ProcessInfo nextProcess = specification.getNextProcess(),
+                                previousProcess = specification.getPreviousProcess();
+                        String nextProcessName = nextProcess.getName();
+                        if (idle || (!nextProcessName.startsWith("swapper"))
+                                && !nextProcessName.startsWith("kworker")
+                                && !nextProcessName.startsWith("migration")) {
+                            System.out.printf("%s [%02d] switch %s to %s\n",
+                                    record.getTimestamp(),
+                                    lastCore,
+                                    previousProcess.toTwoPointsString(),
+                                    nextProcess.toTwoPointsString());
+    //                        System.out.printf("Next source [%d] switch: %s at %s\n",
+    //                                lastCore,
+    //                                nextProcess.toTwoPointsString(),
+    //                                record.getTimestamp());
+                            if (idle) idle = false;
+                            else lastCore = -1;
+                        }
                     }
                 }
             }
@@ -53,12 +53,12 @@ public class Control {
     /*
     Filters
      */
-    public static void userInputFilter(String input, Function<String, RecordFilter> model) {
+    public static void userInputFilter(String input, Function<String, RecordFilter> model) throws IOException {
         var filter = model.apply(input);
         MODEL.addFilter(filter);
     }
 
-    public static void userInputFilterExpr(String input) {
+    public static void userInputFilterExpr(String input) throws IOException {
         var filter = FilterParser.parse(input);
         MODEL.addFilter(filter);
     }
@@ -67,7 +67,7 @@ public class Control {
         return MODEL.getFilters();
     }
 
-    public static void removeFilter(RecordFilter filter) {
+    public static void removeFilter(RecordFilter filter) throws IOException {
         MODEL.removeFilter(filter);
     }
 
@@ -85,6 +85,11 @@ public class Control {
         MODEL.setCurrentRecord(currentRecord);
     }
 
+    public static void jumpToTimestamp(String userInput) throws IOException {
+        Record currentRecord = MODEL.jumpTo(new Record.Timestamp(userInput.strip()));
+        if (currentRecord != null) HISTORY.add(currentRecord);
+    }
+
     public static boolean hasNext() {
         return MODEL.getTrace().hasNext();
     }
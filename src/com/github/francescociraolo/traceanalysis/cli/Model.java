@@ -5,6 +5,7 @@ import com.github.francescociraolo.datastructures.MaxSizeList;
 import com.github.francescociraolo.listenable.ListenableList;
 import com.github.francescociraolo.listenable.ListenableObject;
 import com.github.francescociraolo.listenable.Listener;
+import com.github.francescociraolo.trace.filter.FilterPlanner;
 import com.github.francescociraolo.trace.filter.RecordFilter;
 import com.github.francescociraolo.trace.reader.FilteredTrace;
 import com.github.francescociraolo.trace.reader.PeepTrace;
@@ -13,14 +14,13 @@ import com.github.francescociraolo.trace.Record;
 import com.github.francescociraolo.trace.peepers.CPUsLoad;
 import com.github.francescociraolo.trace.peepers.ProcessesPinInvestigator;
 import com.github.francescociraolo.trace.peepers.ProcessesStatus;
+import com.github.francescociraolo.trace.store.RecordStore;
+import com.github.francescociraolo.trace.store.TraceCache;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 public class Model {
 
@@ -28,13 +28,20 @@ public class Model {
     private final ListenableObject<Trace> trace;
 
     private final ListenableList<RecordFilter> filters = new ListenableList<>(new LinkedList<>());
-    private Predicate<Record> cumulativeFilter = RecordFilter.ALL;
+    private RecordFilter cumulativeFilter = RecordFilter.ALL;
 
     private final ListenableObject<Record> currentRecord;
     private final GroupedCollection<Record, Integer, List<Record>> recordsHistory;
     private final ProcessesStatus processesStatus;
     private final CPUsLoad infoCPUsLoad;
     private final ProcessesPinInvestigator processesPinInvestigator;
+    /* the trace the peepers look at, bounded by the filters */
+    private PeepTrace peepTrace;
+
+    /* records of the last trace read, replayed on restart once read until the end */
+    private RecordStore store;
+    private Path storePath;
+    private TraceCache.Key storeKey;
 
     public Model() {
         tracePath = new ListenableObject<>();
@@ -49,14 +56,78 @@ public class Model {
     }
 
     private void updateTrace(Path path) throws IOException {
-        infoCPUsLoad.clear();
+        /* the trace replaced holds its decoders and mapped files until closed */
+        var previous = this.trace.get();
+        if (previous != null)
+            previous.close();
+
+        clearPeepers();
         currentRecord.set(null);
-        recordsHistory.clear();
 
-        Trace trace = Trace.fromDatFile(path);
-        trace = new PeepTrace(trace, processesStatus, infoCPUsLoad, processesPinInvestigator);
-        trace = new FilteredTrace(trace, this::filterRecord);
+        var key = TraceCache.Key.of(path);
+        if (store == null || !store.isComplete() || !path.equals(storePath) || !key.equals(storeKey)) {
+            store = TraceCache.read(path).orElse(null);
+            storePath = path;
+            storeKey = key;
+        }
+
+        Trace trace;
+        if (store != null)
+            trace = store.cursor();
+        else {
+            trace = Trace.fromDatFile(path);
+            store = new RecordStore(trace.getCpusCount());
+            trace = store.recording(trace, complete -> writeCache(path, key, complete));
+        }
+        peepTrace = new PeepTrace(trace, processesStatus, infoCPUsLoad, processesPinInvestigator);
+        trace = new FilteredTrace(peepTrace, this::filterRecord);
         this.trace.set(trace);
+        applyBounds();
+    }
+
+    /*
+    The time range and the cores of the filters bound what is read: a seekable trace moves to the start of the range
+    when it is not there yet, and reading ends past the range. The peepers see exactly the records in the bounds, so
+    loads and statuses describe the selected cores and time range only; types and pids are filtered after them, since
+    loads and statuses come from records of any type. Moving forward drops loads and history as jumpTo does.
+    A trace read for the first time is recorded whole for its cache, there the bounds filter the same records a
+    cursor on the cache would return
+     */
+    private void applyBounds() throws IOException {
+        if (peepTrace == null)
+            return;
+
+        var bounds = cumulativeFilter.constraint().timeAndCores();
+        peepTrace.pushDown(bounds);
+
+        var current = currentRecord.get();
+        if (bounds.getFrom() != Long.MIN_VALUE
+                && (current == null || current.getTimestamp().getNanos() < bounds.getFrom())) {
+            clearPeepers();
+            if (peepTrace.isSeekable())
+                peepTrace.seek(Record.Timestamp.ofNanos(bounds.getFrom(), 9));
+        }
+    }
+
+    /*
+    Loads, statuses and history do not lead to a position the trace jumps to
+     */
+    private void clearPeepers() {
+        infoCPUsLoad.clear();
+        processesStatus.clear();
+        processesPinInvestigator.clear();
+        recordsHistory.clear();
+    }
+
+    /*
+    A trace that cannot be cached is just parsed again next time
+     */
+    private void writeCache(Path path, TraceCache.Key key, RecordStore store) {
+        try {
+            TraceCache.write(path, key, store);
+        } catch (IOException e) {
+            System.err.printf("Unable to cache the trace: %s%n", e.getMessage());
+        }
     }
 
     public void restart() throws IOException {
@@ -66,6 +137,31 @@ public class Model {
     public Trace getTrace() {
         return trace.get();
     }
+
+    /*
+    Moves to the first record from the timestamp on and makes it the current one. Traces that cannot seek are read
+    forward until there; after a seek, loads and history collected so far are dropped, they do not lead to the new
+    position
+     */
+    public Record jumpTo(Record.Timestamp timestamp) throws IOException {
+        var trace = this.trace.get();
+        Record record = null;
+
+        if (trace.isSeekable()) {
+            clearPeepers();
+            trace.seek(timestamp);
+            if (trace.hasNext())
+                record = trace.next();
+        } else
+            while (record == null && trace.hasNext()) {
+                record = trace.next();
+                if (record != null && record.getTimestamp().compareTo(timestamp) < 0)
+                    record = null;
+            }
+
+        currentRecord.set(record);
+        return record;
+    }
     /*
 
      */
@@ -94,23 +190,15 @@ public class Model {
 
      */
 
-    private void updateFilter() {
-        Map<String, List<RecordFilter>> map = filters.stream().collect(Collectors.groupingBy(RecordFilter::getField));
-        cumulativeFilter = null;
-
-        for (List<RecordFilter> filters : map.values())
-            if (!filters.isEmpty()) {
-                Predicate<Record> fieldFilter = filters.remove(0);
-                for (RecordFilter filter : filters)
-                    fieldFilter = fieldFilter.or(filter);
-                if (cumulativeFilter == null)
-                    cumulativeFilter = fieldFilter;
-                else
-                    cumulativeFilter = cumulativeFilter.and(fieldFilter);
-            }
+    /*
+    Filters on the same field are alternatives, the planner folds and orders them
+     */
+    private void updateFilter() throws IOException {
+        cumulativeFilter = FilterPlanner.plan(filters);
+        applyBounds();
     }
 
-    public void addFilter(RecordFilter filter) {
+    public void addFilter(RecordFilter filter) throws IOException {
         filters.add(filter);
         updateFilter();
     }
@@ -119,7 +207,7 @@ public class Model {
         return filters;
     }
 
-    public void removeFilter(RecordFilter filter) {
+    public void removeFilter(RecordFilter filter) throws IOException {
         filters.remove(filter);
         updateFilter();
     }
@@ -6,6 +6,7 @@ import com.github.francescociraolo.trace.filter.Tools;
 import com.github.francescociraolo.traceanalysis.cli.Control;
 import com.github.francescociraolo.trace.RecordSpecification.Type;
 
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
 import java.util.Optional;
@@ -45,14 +46,8 @@ public class FiltersView extends View<FiltersState> {
                 new Pair<>("pid", join(Integer::parseInt, Tools::pidFilter)),
                 new Pair<>("specification pid", join(Integer::parseInt, Tools::specificationPidFilter)),
                 new Pair<>("type", join(Type::findTypeByString, Optional::get).andThen(Tools::typeFilter)),
-                new Pair<>("timestamp greater than", s -> {
-                    var d = Double.parseDouble(s);
-                    return Tools.timestampFilter(v -> v >= d, ">= " + s);
-                }),
-                new Pair<>("timestamp lower than", s -> {
-                    var d = Double.parseDouble(s);
-                    return Tools.timestampFilter(v -> v <= d, "<= " + s);
-                }),
+                new Pair<>("timestamp greater than", s -> Tools.timestampFrom(Double.parseDouble(s), ">= " + s)),
+                new Pair<>("timestamp lower than", s -> Tools.timestampTo(Double.parseDouble(s), "<= " + s)),
                 new Pair<>("core", join(Integer::parseInt, Tools::coreFilter)),
                 new Pair<>("core (with specification)", join(Integer::parseInt, Tools::coreAndSpecificationFilter))
         );
@@ -125,17 +120,29 @@ public class FiltersView extends View<FiltersState> {
                 state = FiltersState.ADDING;
                 break;
             case ADD_EXPR:
-                Control.userInputFilterExpr(input);
+                try {
+                    Control.userInputFilterExpr(input);
+                } catch (IOException e) {
+                    e.printStackTrace(System.err);
+                }
                 reset();
                 break;
             case ADDING:
-                Control.userInputFilter(input, addingEntry.getSecond());
+                try {
+                    Control.userInputFilter(input, addingEntry.getSecond());
+                } catch (IOException e) {
+                    e.printStackTrace(System.err);
+                }
                 reset();
                 break;
             case REMOVE:
                 var filter = Control.extractUserSelected(Control.getFilters(), input);
                 state = FiltersState.MAIN;
-                Control.removeFilter(filter);
+                try {
+                    Control.removeFilter(filter);
+                } catch (IOException e) {
+                    e.printStackTrace(System.err);
+                }
                 break;
         }
         return view;
@@ -16,7 +16,8 @@ enum SearchState {
     CPU_IDLE,
     SELECT_RECORDS_CORE,
     SELECT_LIST_SIZE,
-    LAST_RECORDS
+    LAST_RECORDS,
+    JUMP_TIMESTAMP
 }
 
 public class SearchView extends View<SearchState> {
@@ -35,6 +36,7 @@ public class SearchView extends View<SearchState> {
     public SearchView() {
         mainMenu = List.of(
                 new ViewMenuEntry("Search next record", this::nextRecord),
+                new ViewMenuEntry("Jump to timestamp", justUpdateState(SearchState.JUMP_TIMESTAMP)),
                 new ViewMenuEntry("Reload trace from beginning", this::reloadTrace),
                 new ViewMenuEntry("Cores running tasks", justUpdateState(SearchState.RUNNING_TASKS)),
                 new ViewMenuEntry("Cores' idle time", justUpdateState(SearchState.CPU_IDLE)),
@@ -52,15 +54,17 @@ public class SearchView extends View<SearchState> {
         noRecordMenu = List.of(
                 mainMenu.get(0),
                 mainMenu.get(1),
-                mainMenu.get(4),
+                mainMenu.get(2),
                 mainMenu.get(5),
-                mainMenu.get(6)
+                mainMenu.get(6),
+                mainMenu.get(7)
         );
         endMenu = List.of(
+                mainMenu.get(2),
                 mainMenu.get(1),
-                mainMenu.get(4),
-                mainMenu.get(6),
-                mainMenu.get(5)
+                mainMenu.get(5),
+                mainMenu.get(7),
+                mainMenu.get(6)
         );
     }
 
@@ -92,6 +96,16 @@ public class SearchView extends View<SearchState> {
         return this;
     }
 
+    private View<?> jumpTo(String input) {
+        try {
+            Control.jumpToTimestamp(input);
+        } catch (IOException e) {
+            e.printStackTrace(System.err);
+        }
+        state = prepareNewState();
+        return this;
+    }
+
     private View<?> mainMenu() {
         return mainView;
     }
@@ -177,6 +191,10 @@ public class SearchView extends View<SearchState> {
                 printTitle(printStream, "Select which core's records to show");
                 askForInput(printStream, "Insert core number");
                 break;
+            case JUMP_TIMESTAMP:
+                printTitle(printStream, "Jump to timestamp");
+                askForInput(printStream, "Insert timestamp in seconds");
+                break;
             case SELECT_LIST_SIZE:
                 printTitle(printStream, "Select list size");
                 askForInput(printStream, String.format("Insert list size (default %d)", listSize));
@@ -219,6 +237,9 @@ public class SearchView extends View<SearchState> {
                 listSize = Control.parseOrDefault(input, Integer::parseInt, listSize);
                 state = SearchState.LAST_RECORDS;
                 break;
+            case JUMP_TIMESTAMP:
+                view = jumpTo(input);
+                break;
         }
         return view;
     }